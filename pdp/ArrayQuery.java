@@ -0,0 +1,377 @@
+package Pdp2;
+import java.util.concurrent.*;
+import java.util.*;
+
+// Several statistics over an int array in one pass.
+// A query is a list of aggregations. Each chunk runs over its range one small block
+// at a time and feeds the block to every aggregation while it is still in L1, so
+// memory is read once however many statistics are asked for. Each aggregation has
+// a partial result made of primitive fields, with a typed combine for the merge.
+//
+//   Aggregation<ArrayQuery.Max> max = ArrayQuery.max();
+//   Aggregation<ArrayQuery.EvenCount> evens = ArrayQuery.evenCount();
+//   ArrayQuery.Result result = new ArrayQuery(max, evens).run(executor, array, numChunks);
+//   result.get(max).value();
+public class ArrayQuery {
+
+    // Elements per block, small enough for the block to stay in L1 across all aggregations
+    static final int BLOCK_SIZE = 2048;
+
+    // Per-chunk state of one aggregation
+    abstract static class Partial<P extends Partial<P>> {
+        // Folds array[from, to) into this partial; from and to are indexes into the whole array
+        abstract void accumulate(int[] array, int from, int to);
+
+        // Merges the partial of a later chunk into this one
+        abstract void combine(P later);
+    }
+
+    interface Aggregation<P extends Partial<P>> {
+        P newPartial();
+    }
+
+    static final class Max extends Partial<Max> {
+        int max = Integer.MIN_VALUE;
+
+        void accumulate(int[] array, int from, int to) {
+            int m = max;
+            for (int i = from; i < to; i++) {
+                if (array[i] > m) {
+                    m = array[i];
+                }
+            }
+            max = m;
+        }
+
+        void combine(Max later) {
+            max = Math.max(max, later.max);
+        }
+
+        public int value() {
+            return max;
+        }
+    }
+
+    static final class Min extends Partial<Min> {
+        int min = Integer.MAX_VALUE;
+
+        void accumulate(int[] array, int from, int to) {
+            int m = min;
+            for (int i = from; i < to; i++) {
+                if (array[i] < m) {
+                    m = array[i];
+                }
+            }
+            min = m;
+        }
+
+        void combine(Min later) {
+            min = Math.min(min, later.min);
+        }
+
+        public int value() {
+            return min;
+        }
+    }
+
+    static final class Sum extends Partial<Sum> {
+        long sum = 0;
+
+        void accumulate(int[] array, int from, int to) {
+            long s = sum;
+            for (int i = from; i < to; i++) {
+                s += array[i];
+            }
+            sum = s;
+        }
+
+        void combine(Sum later) {
+            sum += later.sum;
+        }
+
+        public long value() {
+            return sum;
+        }
+    }
+
+    static final class EvenCount extends Partial<EvenCount> {
+        long count = 0;
+
+        void accumulate(int[] array, int from, int to) {
+            long c = count;
+            for (int i = from; i < to; i++) {
+                if (array[i] % 2 == 0) {
+                    c++;
+                }
+            }
+            count = c;
+        }
+
+        void combine(EvenCount later) {
+            count += later.count;
+        }
+
+        public long value() {
+            return count;
+        }
+    }
+
+    // Index of the first occurrence of the largest value, -1 for an empty array
+    static final class ArgMax extends Partial<ArgMax> {
+        int max = Integer.MIN_VALUE;
+        int index = -1;
+
+        void accumulate(int[] array, int from, int to) {
+            int m = max, idx = index;
+            for (int i = from; i < to; i++) {
+                if (array[i] > m || idx < 0) {
+                    m = array[i];
+                    idx = i;
+                }
+            }
+            max = m;
+            index = idx;
+        }
+
+        void combine(ArgMax later) {
+            // Chunks are merged in order, so on a tie the earlier index stays
+            if (later.index >= 0 && (index < 0 || later.max > max)) {
+                max = later.max;
+                index = later.index;
+            }
+        }
+
+        public int index() {
+            return index;
+        }
+
+        public int value() {
+            return max;
+        }
+    }
+
+    static final class CountAbove extends Partial<CountAbove> {
+        final int threshold;
+        long count = 0;
+
+        CountAbove(int threshold) {
+            this.threshold = threshold;
+        }
+
+        void accumulate(int[] array, int from, int to) {
+            long c = count;
+            for (int i = from; i < to; i++) {
+                if (array[i] > threshold) {
+                    c++;
+                }
+            }
+            count = c;
+        }
+
+        void combine(CountAbove later) {
+            count += later.count;
+        }
+
+        public long value() {
+            return count;
+        }
+    }
+
+    // Equal-width bins over [low, high); values outside the range are only counted
+    static final class Histogram extends Partial<Histogram> {
+        final int low, high;
+        final long[] counts;
+        long outside = 0;
+
+        Histogram(int low, int high, int bins) {
+            this.low = low;
+            this.high = high;
+            this.counts = new long[bins];
+        }
+
+        void accumulate(int[] array, int from, int to) {
+            long width = high - (long) low;
+            int bins = counts.length;
+            for (int i = from; i < to; i++) {
+                int v = array[i];
+                if (v < low || v >= high) {
+                    outside++;
+                } else {
+                    counts[(int) ((v - (long) low) * bins / width)]++;
+                }
+            }
+        }
+
+        void combine(Histogram later) {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += later.counts[i];
+            }
+            outside += later.outside;
+        }
+
+        public long[] counts() {
+            return counts;
+        }
+
+        public long outside() {
+            return outside;
+        }
+    }
+
+    static Aggregation<Max> max() {
+        return Max::new;
+    }
+
+    static Aggregation<Min> min() {
+        return Min::new;
+    }
+
+    static Aggregation<Sum> sum() {
+        return Sum::new;
+    }
+
+    static Aggregation<EvenCount> evenCount() {
+        return EvenCount::new;
+    }
+
+    static Aggregation<ArgMax> argMax() {
+        return ArgMax::new;
+    }
+
+    static Aggregation<CountAbove> countAbove(int threshold) {
+        return () -> new CountAbove(threshold);
+    }
+
+    static Aggregation<Histogram> histogram(int low, int high, int bins) {
+        if (low >= high || bins < 1) {
+            throw new IllegalArgumentException("Bad histogram range [" + low + ", " + high + ") with " + bins + " bins");
+        }
+        return () -> new Histogram(low, high, bins);
+    }
+
+    // The merged partials, looked up by the aggregation that produced them
+    static class Result {
+        private final List<Aggregation<?>> aggregations;
+        private final Partial<?>[] partials;
+
+        Result(List<Aggregation<?>> aggregations, Partial<?>[] partials) {
+            this.aggregations = aggregations;
+            this.partials = partials;
+        }
+
+        @SuppressWarnings("unchecked")
+        <P extends Partial<P>> P get(Aggregation<P> aggregation) {
+            for (int i = 0; i < aggregations.size(); i++) {
+                if (aggregations.get(i) == aggregation) {
+                    return (P) partials[i];
+                }
+            }
+            throw new IllegalArgumentException("Aggregation is not part of this query");
+        }
+    }
+
+    private final List<Aggregation<?>> aggregations;
+
+    ArrayQuery(Aggregation<?>... aggregations) {
+        if (aggregations.length == 0) {
+            throw new IllegalArgumentException("A query needs at least one aggregation");
+        }
+        this.aggregations = List.of(aggregations);
+    }
+
+    // One fused pass over array[start, end)
+    Partial<?>[] scan(int[] array, int start, int end) {
+        Partial<?>[] partials = new Partial<?>[aggregations.size()];
+        for (int k = 0; k < partials.length; k++) {
+            partials[k] = aggregations.get(k).newPartial();
+        }
+        for (int blockStart = start; blockStart < end; blockStart += BLOCK_SIZE) {
+            int blockEnd = Math.min(end, blockStart + BLOCK_SIZE);
+            for (Partial<?> partial : partials) {
+                partial.accumulate(array, blockStart, blockEnd);
+            }
+        }
+        return partials;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static void combine(Partial into, Partial later) {
+        into.combine(later);
+    }
+
+    Result run(ExecutorService executor, int[] array, int numChunks) {
+        List<Future<Partial<?>[]>> futures = new ArrayList<>();
+        int size = array.length;
+        int chunkSize = size / numChunks;
+
+        for (int i = 0; i < numChunks; i++) {
+            int start = i * chunkSize;
+            int end = (i == numChunks - 1) ? size : start + chunkSize;
+            futures.add(executor.submit(() -> scan(array, start, end)));
+        }
+
+        Partial<?>[] merged = null;
+        for (Future<Partial<?>[]> future : futures) {
+            try {
+                Partial<?>[] partials = future.get();
+                if (merged == null) {
+                    merged = partials;
+                } else {
+                    for (int k = 0; k < merged.length; k++) {
+                        combine(merged[k], partials[k]);
+                    }
+                }
+            } catch (InterruptedException | ExecutionException e) {
+                throw new IllegalStateException("Query failed", e);
+            }
+        }
+        return new Result(aggregations, merged);
+    }
+
+    // args: [size]
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        int[] array = new Random().ints(size, 1, 100_000).toArray();
+        int numThreads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+
+        Aggregation<Max> max = max();
+        Aggregation<Min> min = min();
+        Aggregation<Sum> sum = sum();
+        Aggregation<EvenCount> evens = evenCount();
+        Aggregation<ArgMax> argMax = argMax();
+        Aggregation<CountAbove> above = countAbove(90_000);
+        Aggregation<Histogram> histogram = histogram(0, 100_000, 10);
+        List<Aggregation<?>> all = List.of(max, min, sum, evens, argMax, above, histogram);
+        ArrayQuery fused = new ArrayQuery(max, min, sum, evens, argMax, above, histogram);
+
+        // Warm up both ways before timing them
+        for (int i = 0; i < 5; i++) {
+            fused.run(executor, array, numThreads);
+            for (Aggregation<?> aggregation : all) {
+                new ArrayQuery(aggregation).run(executor, array, numThreads);
+            }
+        }
+
+        long startTime = System.nanoTime();
+        Result result = fused.run(executor, array, numThreads);
+        long fusedNanos = System.nanoTime() - startTime;
+
+        startTime = System.nanoTime();
+        for (Aggregation<?> aggregation : all) {
+            new ArrayQuery(aggregation).run(executor, array, numThreads);
+        }
+        long separateNanos = System.nanoTime() - startTime;
+        executor.shutdown();
+
+        System.out.println("Largest Number in the Array: " + result.get(max).value());
+        System.out.println("Smallest Number in the Array: " + result.get(min).value());
+        System.out.println("Sum: " + result.get(sum).value());
+        System.out.println("Total Even Count: " + result.get(evens).value());
+        System.out.println("First index of the largest: " + result.get(argMax).index());
+        System.out.println("Count above 90000: " + result.get(above).value());
+        System.out.println("Histogram: " + Arrays.toString(result.get(histogram).counts()));
+        System.out.printf("Fused pass: %.3f millisecs, separate passes: %.3f millisecs%n",
+            fusedNanos / 1e6, separateNanos / 1e6);
+    }
+}
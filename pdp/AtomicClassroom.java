@@ -0,0 +1,254 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+
+// Lock-free version of CollegeClassrooms.Classroom.
+// The whole room state is packed into one AtomicLong, so entering or leaving is a single
+// CAS loop that checks the same rules: students up to capacity - 5 (5 places are kept for
+// visitors), at most 5 visitors, one lecturer at a time, and nobody enters while a lecture
+// is in session. A thread only queues and parks when its admission is really blocked.
+// Wakeups are handed along: a release unparks the first waiter of the affected role, and
+// a waiter that gets in unparks the next one, which re-checks and parks again if full.
+//
+// State word:  bit 48 inSession | bits 28-47 lecturer id | bits 20-27 visitors | bits 0-19 students
+public class AtomicClassroom {
+
+    static final int STUDENT_SHIFT = 0, STUDENT_BITS = 20;
+    static final int VISITOR_SHIFT = 20, VISITOR_BITS = 8;
+    static final int LECTURER_SHIFT = 28, LECTURER_BITS = 20;
+    static final long SESSION_BIT = 1L << 48;
+
+    static final long STUDENT_ONE = 1L << STUDENT_SHIFT;
+    static final long VISITOR_ONE = 1L << VISITOR_SHIFT;
+    static final long LECTURER_MASK = ((1L << LECTURER_BITS) - 1) << LECTURER_SHIFT;
+
+    static final int MAX_VISITORS = 5;
+    static final int MAX_LECTURER_ID = (1 << LECTURER_BITS) - 1;
+    static final int SPINS = 64;
+
+    final String name;
+    final int capacity;
+    final int studentLimit;
+    private final AtomicLong state = new AtomicLong();
+
+    private final ConcurrentLinkedQueue<Thread> waitingStudents = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Thread> waitingVisitors = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Thread> waitingLecturers = new ConcurrentLinkedQueue<>();
+
+    public AtomicClassroom(String name, int capacity) {
+        if (capacity - MAX_VISITORS < 1 || capacity - MAX_VISITORS >= (1 << STUDENT_BITS)) {
+            throw new IllegalArgumentException("Capacity out of range: " + capacity);
+        }
+        this.name = name;
+        this.capacity = capacity;
+        this.studentLimit = capacity - MAX_VISITORS; // Reserving 5 spots for visitors
+    }
+
+    static int students(long s) {
+        return (int) ((s >>> STUDENT_SHIFT) & ((1L << STUDENT_BITS) - 1));
+    }
+
+    static int visitors(long s) {
+        return (int) ((s >>> VISITOR_SHIFT) & ((1L << VISITOR_BITS) - 1));
+    }
+
+    // 0 means no lecturer
+    static int lecturer(long s) {
+        return (int) ((s & LECTURER_MASK) >>> LECTURER_SHIFT);
+    }
+
+    static boolean inSession(long s) {
+        return (s & SESSION_BIT) != 0;
+    }
+
+    // A CAS attempt for one kind of admission; false when the rules block it right now
+    private interface Admission {
+        boolean tryEnter();
+    }
+
+    private boolean tryEnterStudent() {
+        long s = state.get();
+        while (!inSession(s) && students(s) < studentLimit) {
+            if (state.compareAndSet(s, s + STUDENT_ONE)) {
+                return true;
+            }
+            s = state.get();
+        }
+        return false;
+    }
+
+    private boolean tryEnterVisitor() {
+        long s = state.get();
+        while (!inSession(s) && visitors(s) < MAX_VISITORS) {
+            if (state.compareAndSet(s, s + VISITOR_ONE)) {
+                return true;
+            }
+            s = state.get();
+        }
+        return false;
+    }
+
+    private boolean tryEnterLecturer(int lecturerId) {
+        long s = state.get();
+        while (lecturer(s) == 0) {
+            // As in Classroom.enterLecturer: the lecture has not started yet
+            long next = (s & ~SESSION_BIT) | ((long) lecturerId << LECTURER_SHIFT);
+            if (state.compareAndSet(s, next)) {
+                return true;
+            }
+            s = state.get();
+        }
+        return false;
+    }
+
+    private void acquire(ConcurrentLinkedQueue<Thread> queue, Admission admission) throws InterruptedException {
+        if (admission.tryEnter()) {
+            return;
+        }
+        for (int i = 0; i < SPINS; i++) {
+            Thread.onSpinWait();
+            if (admission.tryEnter()) {
+                return;
+            }
+        }
+        Thread me = Thread.currentThread();
+        queue.add(me);
+        boolean entered = false;
+        try {
+            while (!(entered = admission.tryEnter())) {
+                LockSupport.park(this);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        } finally {
+            queue.remove(me);
+            // Pass the wakeup on: after an entry there may be room for the next waiter,
+            // and a waiter giving up must not swallow a wakeup meant for the queue
+            wakeFirst(queue);
+        }
+    }
+
+    private static void wakeFirst(ConcurrentLinkedQueue<Thread> queue) {
+        Thread next = queue.peek();
+        if (next != null) {
+            LockSupport.unpark(next);
+        }
+    }
+
+    public void enterStudent() throws InterruptedException {
+        acquire(waitingStudents, this::tryEnterStudent);
+    }
+
+    public void leaveStudent() {
+        state.addAndGet(-STUDENT_ONE);
+        wakeFirst(waitingStudents);
+    }
+
+    public void enterVisitor() throws InterruptedException {
+        acquire(waitingVisitors, this::tryEnterVisitor);
+    }
+
+    public void leaveVisitor() {
+        state.addAndGet(-VISITOR_ONE);
+        wakeFirst(waitingVisitors);
+    }
+
+    public void enterLecturer(int lecturerId) throws InterruptedException {
+        if (lecturerId < 1 || lecturerId > MAX_LECTURER_ID) {
+            throw new IllegalArgumentException("Lecturer id out of range: " + lecturerId);
+        }
+        acquire(waitingLecturers, () -> tryEnterLecturer(lecturerId));
+    }
+
+    public void startLecture() {
+        long s = state.get();
+        while (!state.compareAndSet(s, s | SESSION_BIT)) {
+            s = state.get();
+        }
+    }
+
+    public void leaveLecturer() {
+        long s = state.get();
+        while (!state.compareAndSet(s, s & ~(SESSION_BIT | LECTURER_MASK))) {
+            s = state.get();
+        }
+        // The session is over, so students, visitors and the next lecturer may all get in
+        wakeFirst(waitingStudents);
+        wakeFirst(waitingVisitors);
+        wakeFirst(waitingLecturers);
+    }
+
+    // One read of the state word gives a consistent row without taking any lock
+    public String getStatus(String[] lecturerNames) {
+        long s = state.get();
+        int lecturer = lecturer(s);
+        return String.format("%-6s %-8s %-5s %-8d %-8d",
+            name,
+            lecturer == 0 ? "None" : lecturer <= lecturerNames.length ? lecturerNames[lecturer - 1] : "L" + lecturer,
+            inSession(s),
+            students(s),
+            visitors(s));
+    }
+
+    // Admission throughput of this class against CollegeClassrooms.Classroom.
+    // args: [threads] [seconds]
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        CollegeClassrooms.Classroom locked = new CollegeClassrooms.Classroom("W201", 60);
+        long lockedOps = measure(threads, seconds, () -> {
+            locked.enterStudent();
+            locked.leaveStudent();
+        }, () -> {
+            locked.enterVisitor();
+            locked.leaveVisitor();
+        });
+
+        AtomicClassroom atomic = new AtomicClassroom("W201", 60);
+        long atomicOps = measure(threads, seconds, () -> {
+            atomic.enterStudent();
+            atomic.leaveStudent();
+        }, () -> {
+            atomic.enterVisitor();
+            atomic.leaveVisitor();
+        });
+
+        System.out.printf("%-28s %,14d admissions/sec%n", "Lock + semaphores", lockedOps / seconds);
+        System.out.printf("%-28s %,14d admissions/sec%n", "Packed AtomicLong", atomicOps / seconds);
+        System.out.println(threads + " threads (1 in 8 a visitor), capacity 60");
+    }
+
+    interface Visit {
+        void run() throws InterruptedException;
+    }
+
+    static long measure(int threads, int seconds, Visit student, Visit visitor) throws InterruptedException {
+        LongAdder admissions = new LongAdder();
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Visit visit = t % 8 == 7 ? visitor : student;
+            Thread worker = new Thread(() -> {
+                try {
+                    while (running.get()) {
+                        visit.run();
+                        admissions.increment();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        Thread.sleep(seconds * 1000L);
+        running.set(false);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return admissions.sum();
+    }
+}
@@ -0,0 +1,194 @@
+package Pdp2;
+import java.io.*;
+import java.nio.file.*;
+import java.util.concurrent.*;
+import java.util.*;
+
+// Picks the thread count and chunk count for LargestValue.reduce by measuring them.
+// Calibration runs short probe reductions over a grid of settings for each array size
+// band (powers of ten) and saves the fastest setting per band in a properties file,
+// which LargestValue reads at startup.
+//
+// args: calibrate [size...]    measure and write the profile
+//       show                    print the saved profile
+public class AutoTuner {
+
+    static final Path PROFILE_FILE = Paths.get(System.getProperty("largestvalue.profile",
+        "largestvalue-profile.properties"));
+
+    static final long PROBE_NANOS = 200_000_000L;
+    static final int[] CHUNKS_PER_THREAD = {1, 2, 4, 8, 16};
+
+    static class Setting {
+        final int threads;
+        final int chunks;
+
+        Setting(int threads, int chunks) {
+            this.threads = threads;
+            this.chunks = chunks;
+        }
+
+        @Override
+        public String toString() {
+            return threads + "," + chunks;
+        }
+
+        static Setting parse(String value) {
+            String[] parts = value.split(",");
+            return new Setting(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()));
+        }
+    }
+
+    static class Profile {
+        final TreeMap<Integer, Setting> bands = new TreeMap<>();
+
+        // The setting of the nearest calibrated band, or one chunk per processor
+        Setting lookup(long size) {
+            int band = band(size);
+            Map.Entry<Integer, Setting> floor = bands.floorEntry(band);
+            Map.Entry<Integer, Setting> ceiling = bands.ceilingEntry(band);
+            if (floor == null && ceiling == null) {
+                int processors = Runtime.getRuntime().availableProcessors();
+                return new Setting(processors, processors);
+            }
+            if (floor == null) {
+                return ceiling.getValue();
+            }
+            if (ceiling == null || band - floor.getKey() <= ceiling.getKey() - band) {
+                return floor.getValue();
+            }
+            return ceiling.getValue();
+        }
+    }
+
+    static int band(long size) {
+        return size < 10 ? 0 : (int) Math.log10(size);
+    }
+
+    static Profile load() {
+        return load(PROFILE_FILE);
+    }
+
+    static Profile load(Path file) {
+        Profile profile = new Profile();
+        if (!Files.exists(file)) {
+            return profile;
+        }
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file)) {
+            properties.load(reader);
+        } catch (IOException e) {
+            System.err.println("Could not read " + file + ", using defaults: " + e);
+            return profile;
+        }
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith("band.")) {
+                try {
+                    profile.bands.put(Integer.parseInt(key.substring(5)), Setting.parse(properties.getProperty(key)));
+                } catch (RuntimeException e) {
+                    System.err.println("Ignoring bad profile entry " + key + ": " + e);
+                }
+            }
+        }
+        return profile;
+    }
+
+    static void save(Profile profile, Path file) throws IOException {
+        Properties properties = new Properties();
+        for (Map.Entry<Integer, Setting> entry : profile.bands.entrySet()) {
+            properties.setProperty("band." + entry.getKey(), entry.getValue().toString());
+        }
+        try (Writer writer = Files.newBufferedWriter(file)) {
+            properties.store(writer, "LargestValue settings per size band (10^band elements): threads,chunks");
+        }
+    }
+
+    // Thread counts to try: powers of two up to the processor count, the count itself and twice it
+    static int[] threadGrid() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        TreeSet<Integer> counts = new TreeSet<>();
+        for (int t = 1; t <= processors; t *= 2) {
+            counts.add(t);
+        }
+        counts.add(processors);
+        counts.add(processors * 2);
+        return counts.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    static Setting calibrate(int size) {
+        int[] array = new int[size];
+        ExecutorService generator = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        ParallelGenerator.fill(generator, array, Runtime.getRuntime().availableProcessors(), 42L, 1, 100_000);
+        generator.shutdown();
+
+        Setting best = null;
+        double bestThroughput = 0;
+        for (int threads : threadGrid()) {
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                for (int perThread : CHUNKS_PER_THREAD) {
+                    int chunks = (int) Math.min(size, (long) threads * perThread);
+                    // Short warm-up, then count elements scanned in the probe window
+                    for (int i = 0; i < 3; i++) {
+                        LargestValue.reduce(executor, array, chunks);
+                    }
+                    long runs = 0;
+                    long startTime = System.nanoTime();
+                    long elapsed;
+                    do {
+                        LargestValue.reduce(executor, array, chunks);
+                        runs++;
+                        elapsed = System.nanoTime() - startTime;
+                    } while (elapsed < PROBE_NANOS);
+                    double throughput = runs * (double) size / (elapsed / 1e9);
+
+                    System.out.printf("  size %,d threads %3d chunks %5d: %,.0f elements/sec%n",
+                        size, threads, chunks, throughput);
+                    if (throughput > bestThroughput) {
+                        bestThroughput = throughput;
+                        best = new Setting(threads, chunks);
+                    }
+                }
+            } finally {
+                executor.shutdown();
+            }
+        }
+        return best;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("show")) {
+            Profile profile = load();
+            System.out.println("Profile " + PROFILE_FILE.toAbsolutePath());
+            for (Map.Entry<Integer, Setting> entry : profile.bands.entrySet()) {
+                System.out.printf("10^%-3d threads %3d chunks %5d%n",
+                    entry.getKey(), entry.getValue().threads, entry.getValue().chunks);
+            }
+            return;
+        }
+        if (args.length == 0 || !args[0].equals("calibrate")) {
+            System.out.println("Usage: AutoTuner calibrate [size...] | show");
+            return;
+        }
+
+        int[] sizes = args.length > 1
+            ? Arrays.stream(args, 1, args.length).mapToInt(Integer::parseInt).toArray()
+            : new int[]{10_000, 100_000, 1_000_000, 10_000_000};
+        for (int size : sizes) {
+            // An empty array has nothing to reduce and no best setting
+            if (size < 1) {
+                throw new IllegalArgumentException("Sizes must be at least 1: " + size);
+            }
+        }
+
+        // Start from the saved profile so calibrating one band keeps the others
+        Profile profile = load();
+        for (int size : sizes) {
+            Setting best = calibrate(size);
+            profile.bands.put(band(size), best);
+            System.out.println("Best for 10^" + band(size) + ": " + best.threads + " threads, " + best.chunks + " chunks");
+        }
+        save(profile, PROFILE_FILE);
+        System.out.println("Saved " + PROFILE_FILE.toAbsolutePath());
+    }
+}
@@ -0,0 +1,212 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+// Rooms of a campus under dense int ids.
+// Rooms are registered once at startup, before the agent threads start, and then only
+// read: lookup by id is an array index, and random and weighted selection use
+// ThreadLocalRandom and a precomputed alias table, so picking a room allocates nothing
+// and costs O(1) however many rooms there are. Names are only mapped to ids while loading,
+// through an open-addressing table of ids, so registering a room boxes nothing.
+public class CampusRegistry<R> {
+
+    private Object[] rooms;
+    private String[] names;
+    private int size = 0;
+    private int[] index; // id + 1 by name hash, 0 for a free slot; at most half full
+
+    public CampusRegistry() {
+        this(16);
+    }
+
+    // Sized up front when the number of rooms is known, e.g. from a scenario file
+    public CampusRegistry(int expectedRooms) {
+        rooms = new Object[Math.max(1, expectedRooms)];
+        names = new String[rooms.length];
+        index = new int[Integer.highestOneBit(Math.max(8, rooms.length) * 2 - 1) << 1];
+    }
+
+    // Alias table for weighted selection (Vose's method), null until weights are set
+    private double[] probability;
+    private int[] alias;
+
+    // Returns the new room's id; ids are 0, 1, 2, ... in registration order
+    public int add(String name, R room) {
+        if (find(name) >= 0) {
+            throw new IllegalArgumentException("Room already registered: " + name);
+        }
+        if (size == rooms.length) {
+            rooms = Arrays.copyOf(rooms, size * 2);
+            names = Arrays.copyOf(names, size * 2);
+        }
+        rooms[size] = room;
+        names[size] = name;
+        if ((size + 1) * 2 > index.length) {
+            index = new int[index.length * 2];
+            for (int id = 0; id < size; id++) {
+                insert(id);
+            }
+        }
+        insert(size);
+        return size++;
+    }
+
+    private void insert(int id) {
+        int mask = index.length - 1;
+        int slot = slot(names[id]);
+        while (index[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        index[slot] = id + 1;
+    }
+
+    // The id registered under name, -1 when there is none
+    private int find(String name) {
+        int mask = index.length - 1;
+        for (int slot = slot(name); index[slot] != 0; slot = (slot + 1) & mask) {
+            if (names[index[slot] - 1].equals(name)) {
+                return index[slot] - 1;
+            }
+        }
+        return -1;
+    }
+
+    private int slot(String name) {
+        int h = name.hashCode();
+        return (h ^ (h >>> 16)) & (index.length - 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    public R get(int id) {
+        return (R) rooms[id];
+    }
+
+    public String nameOf(int id) {
+        return names[id];
+    }
+
+    // For setup code only, agents should keep the int id
+    public int idOf(String name) {
+        int id = find(name);
+        if (id < 0) {
+            throw new IllegalArgumentException("Unknown room: " + name);
+        }
+        return id;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int randomId() {
+        return ThreadLocalRandom.current().nextInt(size);
+    }
+
+    // Sets the relative weight of every room, indexed by id
+    public void setWeights(double[] weights) {
+        if (weights.length != size) {
+            throw new IllegalArgumentException("Expected " + size + " weights, got " + weights.length);
+        }
+        double total = 0;
+        for (double w : weights) {
+            if (w < 0 || Double.isNaN(w)) {
+                throw new IllegalArgumentException("Weights must not be negative: " + w);
+            }
+            total += w;
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("At least one weight must be positive");
+        }
+
+        double[] prob = new double[size];
+        int[] aliasTable = new int[size];
+        double[] scaled = new double[size];
+        int[] small = new int[size], large = new int[size];
+        int smallCount = 0, largeCount = 0;
+        for (int i = 0; i < size; i++) {
+            scaled[i] = weights[i] * size / total;
+            if (scaled[i] < 1.0) {
+                small[smallCount++] = i;
+            } else {
+                large[largeCount++] = i;
+            }
+        }
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+            prob[less] = scaled[less];
+            aliasTable[less] = more;
+            scaled[more] = scaled[more] + scaled[less] - 1.0;
+            if (scaled[more] < 1.0) {
+                small[smallCount++] = more;
+            } else {
+                large[largeCount++] = more;
+            }
+        }
+        // Whatever is left is 1.0 up to rounding
+        while (largeCount > 0) {
+            prob[large[--largeCount]] = 1.0;
+        }
+        while (smallCount > 0) {
+            prob[small[--smallCount]] = 1.0;
+        }
+        this.probability = prob;
+        this.alias = aliasTable;
+    }
+
+    // A room id drawn with the probabilities given to setWeights
+    public int weightedId() {
+        if (probability == null) {
+            throw new IllegalStateException("setWeights has not been called");
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int column = random.nextInt(probability.length);
+        return random.nextDouble() < probability[column] ? column : alias[column];
+    }
+
+    // Selection cost and distribution check on a large campus.
+    // args: [rooms] [draws]
+    public static void main(String[] args) {
+        int roomCount = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int draws = args.length > 1 ? Integer.parseInt(args[1]) : 50_000_000;
+
+        CampusRegistry<CollegeClassrooms.Classroom> campus = new CampusRegistry<>();
+        double[] weights = new double[roomCount];
+        for (int i = 0; i < roomCount; i++) {
+            campus.add("R" + i, new CollegeClassrooms.Classroom("R" + i, 20 + (i % 5) * 10));
+            // Like the CollegeSimulation preferences: the first rooms are the popular ones
+            weights[i] = 1.0 / (i + 1);
+        }
+        campus.setWeights(weights);
+
+        int[] hits = new int[roomCount];
+        for (int warmup = 0; warmup < 3; warmup++) {
+            for (int i = 0; i < 1_000_000; i++) {
+                hits[campus.weightedId()]++;
+                hits[campus.randomId()]++;
+            }
+        }
+        Arrays.fill(hits, 0);
+
+        long startTime = System.nanoTime();
+        for (int i = 0; i < draws; i++) {
+            hits[campus.weightedId()]++;
+        }
+        long weightedNanos = System.nanoTime() - startTime;
+
+        long capacity = 0;
+        startTime = System.nanoTime();
+        for (int i = 0; i < draws; i++) {
+            capacity += campus.get(campus.randomId()).capacity;
+        }
+        long uniformNanos = System.nanoTime() - startTime;
+
+        double totalWeight = Arrays.stream(weights).sum();
+        System.out.printf("Rooms: %d, draws: %,d%n", roomCount, draws);
+        System.out.printf("Weighted pick: %.2f ns, uniform pick and lookup: %.2f ns (checksum %d)%n",
+            weightedNanos / (double) draws, uniformNanos / (double) draws, capacity);
+        for (int i = 0; i < Math.min(4, roomCount); i++) {
+            System.out.printf("%-6s expected %.4f observed %.4f%n", campus.nameOf(i),
+                weights[i] / totalWeight, hits[i] / (double) draws);
+        }
+    }
+}
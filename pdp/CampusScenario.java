@@ -0,0 +1,599 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.IntStream;
+
+// Campus description shared by the simulations, and a parallel loader for it.
+// A scenario is a text file with one record per line; fields are separated by blanks
+// and # starts a comment:
+//
+//   room <name> <capacity> [weight]                   weight: relative student preference
+//   lecturer <name>
+//   population <students> <visitors>                  agents for CollegeSimulation
+//   arrivals <students/minute> <visitors/minute>      arrival rates for CollegeClassrooms
+//   timetable <lecturer> <room> <start minute> <minutes>
+//
+// Ids are given in file order. The loader maps the file, cuts it into chunks at line
+// breaks and parses the chunks in parallel straight from the bytes into int and double
+// arrays, so the only objects made per room are its name and, in buildCampus, the room.
+// Every name is also kept as its position in the file. Once all chunks are merged,
+// timetable names are resolved to ids through an open-addressing table over those bytes,
+// without a String or a boxed id per entry.
+public class CampusScenario {
+
+    // The campus the simulations used to hard-code
+    static final String DEFAULT_TEXT = String.join("\n",
+        "room W201 60 40",
+        "room W202 60 30",
+        "room W101 20 10",
+        "room J5101 30 20",
+        "lecturer Osama", "lecturer Barry", "lecturer Faheem",
+        "lecturer Alex", "lecturer Ageel", "lecturer Waseem",
+        "population 150 15",
+        "arrivals 60 18");
+
+    // The records of DEFAULT_TEXT; a file without population or arrivals gets theirs
+    private static final Chunk DEFAULT_RECORDS = defaultRecords();
+
+    static final CampusScenario DEFAULT = parse(
+        ByteBuffer.wrap(DEFAULT_TEXT.getBytes(StandardCharsets.UTF_8)), 1);
+
+    static final int MIN_CHUNK_BYTES = 1 << 20;
+
+    final String[] roomNames;
+    final int[] capacities;
+    final double[] weights; // all 1.0 when no room gives a weight
+    final boolean weighted;
+    final String[] lecturers;
+    final int students, visitors;
+    final double studentsPerMinute, visitorsPerMinute;
+
+    // Timetable entries, indexed together
+    final int[] timetableLecturer, timetableRoom, timetableStart, timetableMinutes;
+
+    private CampusScenario(Chunk all, String[] lecturers, int[] timetableLecturer, int[] timetableRoom) {
+        this.roomNames = Arrays.copyOf(all.roomNames, all.rooms);
+        this.capacities = Arrays.copyOf(all.capacities, all.rooms);
+        this.weights = Arrays.copyOf(all.weights, all.rooms);
+        this.weighted = all.weighted;
+        this.lecturers = lecturers;
+        this.students = all.students;
+        this.visitors = all.visitors;
+        this.studentsPerMinute = all.studentsPerMinute;
+        this.visitorsPerMinute = all.visitorsPerMinute;
+        this.timetableLecturer = timetableLecturer;
+        this.timetableRoom = timetableRoom;
+        this.timetableStart = Arrays.copyOf(all.timetableStart, all.timetable);
+        this.timetableMinutes = Arrays.copyOf(all.timetableMinutes, all.timetable);
+    }
+
+    private static Chunk defaultRecords() {
+        byte[] text = DEFAULT_TEXT.getBytes(StandardCharsets.UTF_8);
+        return new Chunk(ByteBuffer.wrap(text), 0, text.length).parse();
+    }
+
+    // Scenario from -Dclassroom.scenario=<file>, the default campus when it is not set
+    static CampusScenario fromSystemProperties() {
+        String file = System.getProperty("classroom.scenario");
+        if (file == null) {
+            return DEFAULT;
+        }
+        try {
+            return load(Paths.get(file));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static CampusScenario load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Scenario files must be under 2 GB: " + file);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int numChunks = (int) Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() * 4L,
+                channel.size() / MIN_CHUNK_BYTES));
+            return parse(buffer, numChunks);
+        }
+    }
+
+    // Cuts the bytes into numChunks pieces that end on line breaks and parses them in parallel
+    static CampusScenario parse(ByteBuffer bytes, int numChunks) {
+        int size = bytes.limit();
+        int[] bounds = new int[numChunks + 1];
+        bounds[numChunks] = size;
+        int chunkSize = size / numChunks;
+        for (int i = 1; i < numChunks; i++) {
+            int position = Math.max(bounds[i - 1], i * chunkSize);
+            while (position < size && bytes.get(position) != '\n') {
+                position++;
+            }
+            bounds[i] = Math.min(size, position + 1);
+        }
+
+        Chunk[] chunks = new Chunk[numChunks];
+        if (numChunks == 1) {
+            chunks[0] = new Chunk(bytes, 0, size).parse();
+        } else {
+            IntStream.range(0, numChunks).parallel()
+                .forEach(i -> chunks[i] = new Chunk(bytes, bounds[i], bounds[i + 1]).parse());
+        }
+
+        Chunk all = Chunk.merge(chunks);
+        // Timetable names can refer to rooms and lecturers from any chunk
+        NameIndex roomIds = new NameIndex(bytes, all.roomSpans, all.rooms, "Room");
+        NameIndex lecturerIds = new NameIndex(bytes, all.lecturerSpans, all.lecturers, "Lecturer");
+        String[] lecturers = Arrays.copyOf(all.lecturerNames, all.lecturers);
+        int[] timetableLecturer = new int[all.timetable];
+        int[] timetableRoom = new int[all.timetable];
+        for (int i = 0; i < all.timetable; i++) {
+            timetableLecturer[i] = lecturerIds.find(all.timetableLecturerSpans[i]);
+            timetableRoom[i] = roomIds.find(all.timetableRoomSpans[i]);
+            if (timetableLecturer[i] < 0 || timetableRoom[i] < 0) {
+                throw new IllegalArgumentException("Timetable refers to unknown " + (timetableLecturer[i] < 0
+                    ? "lecturer " + string(bytes, all.timetableLecturerSpans[i])
+                    : "room " + string(bytes, all.timetableRoomSpans[i])));
+            }
+        }
+        return new CampusScenario(all, lecturers, timetableLecturer, timetableRoom);
+    }
+
+    interface RoomFactory<R> {
+        R create(String name, int capacity);
+    }
+
+    // Creates the rooms in parallel and registers them under their scenario ids
+    <R> CampusRegistry<R> buildCampus(RoomFactory<R> factory) {
+        Object[] rooms = new Object[roomNames.length];
+        IntStream.range(0, rooms.length).parallel()
+            .forEach(i -> rooms[i] = factory.create(roomNames[i], capacities[i]));
+        CampusRegistry<R> campus = new CampusRegistry<>(rooms.length);
+        for (int i = 0; i < rooms.length; i++) {
+            @SuppressWarnings("unchecked")
+            R room = (R) rooms[i];
+            campus.add(roomNames[i], room);
+        }
+        if (weighted) {
+            campus.setWeights(weights);
+        }
+        return campus;
+    }
+
+    // For every lecturer, the room ids of their timetable in start order
+    int[][] timetableRooms() {
+        // start << 32 | index sorts by start and then by file order, with a primitive sort
+        long[] order = new long[timetableStart.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = ((long) timetableStart[i] << 32) | i;
+        }
+        Arrays.sort(order);
+        int[] counts = new int[lecturers.length];
+        for (int lecturer : timetableLecturer) {
+            counts[lecturer]++;
+        }
+        int[][] rooms = new int[lecturers.length][];
+        for (int i = 0; i < rooms.length; i++) {
+            rooms[i] = new int[counts[i]];
+        }
+        Arrays.fill(counts, 0);
+        for (long packed : order) {
+            int i = (int) packed;
+            int lecturer = timetableLecturer[i];
+            rooms[lecturer][counts[lecturer]++] = timetableRoom[i];
+        }
+        return rooms;
+    }
+
+    // A name's place in the file, packed as offset << 32 | length
+    static long span(int from, int to) {
+        return ((long) from << 32) | (to - from);
+    }
+
+    static String string(ByteBuffer bytes, long span) {
+        byte[] name = new byte[(int) span];
+        bytes.get((int) (span >>> 32), name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    // Open-addressing table from the bytes of a name to its id, probing linearly.
+    // Slots hold id + 1 so that 0 marks a free slot; the table is at most half full.
+    static class NameIndex {
+        private final ByteBuffer bytes;
+        private final long[] spans;
+        private final int[] slots;
+        private final int mask;
+
+        NameIndex(ByteBuffer bytes, long[] spans, int count, String kind) {
+            this.bytes = bytes;
+            this.spans = spans;
+            int tableSize = Integer.highestOneBit(Math.max(2, count) * 2 - 1) << 1;
+            this.slots = new int[tableSize];
+            this.mask = tableSize - 1;
+            for (int id = 0; id < count; id++) {
+                int slot = hash(spans[id]) & mask;
+                while (slots[slot] != 0) {
+                    if (same(spans[slots[slot] - 1], spans[id])) {
+                        throw new IllegalArgumentException(kind + " defined twice: " + string(bytes, spans[id]));
+                    }
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = id + 1;
+            }
+        }
+
+        // The id of the name at span, -1 when there is none
+        int find(long span) {
+            int slot = hash(span) & mask;
+            while (slots[slot] != 0) {
+                if (same(spans[slots[slot] - 1], span)) {
+                    return slots[slot] - 1;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        // FNV-1a over the bytes, with the high bits folded in for the mask
+        private int hash(long span) {
+            int from = (int) (span >>> 32);
+            int to = from + (int) span;
+            int h = 0x811C9DC5;
+            for (int i = from; i < to; i++) {
+                h = (h ^ bytes.get(i)) * 0x01000193;
+            }
+            return h ^ (h >>> 16);
+        }
+
+        private boolean same(long a, long b) {
+            int length = (int) a;
+            if (length != (int) b) {
+                return false;
+            }
+            int from = (int) (a >>> 32), other = (int) (b >>> 32);
+            for (int i = 0; i < length; i++) {
+                if (bytes.get(from + i) != bytes.get(other + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    // Records of one part of the file, in arrays that grow by doubling
+    static class Chunk {
+        private final ByteBuffer bytes;
+        private final int start, end;
+        private int position;
+        private byte[] scratch = new byte[64];
+
+        int rooms = 0;
+        String[] roomNames = new String[16];
+        long[] roomSpans = new long[16];
+        int[] capacities = new int[16];
+        double[] weights = new double[16];
+        boolean weighted = false;
+
+        int lecturers = 0;
+        String[] lecturerNames = new String[16];
+        long[] lecturerSpans = new long[16];
+
+        int timetable = 0;
+        long[] timetableLecturerSpans = new long[16];
+        long[] timetableRoomSpans = new long[16];
+        int[] timetableStart = new int[16];
+        int[] timetableMinutes = new int[16];
+
+        int students = -1, visitors = -1;
+        double studentsPerMinute = -1, visitorsPerMinute = -1;
+
+        Chunk(ByteBuffer bytes, int start, int end) {
+            this.bytes = bytes;
+            this.start = start;
+            this.end = end;
+        }
+
+        Chunk parse() {
+            position = start;
+            while (position < end) {
+                int lineStart = position;
+                int keyStart = skipBlanks();
+                int keyEnd = skipToken();
+                if (keyEnd == keyStart) {
+                    skipLine(lineStart);
+                    continue;
+                }
+                if (is(keyStart, keyEnd, "room")) {
+                    if (rooms == capacities.length) {
+                        int grown = rooms * 2;
+                        roomNames = Arrays.copyOf(roomNames, grown);
+                        roomSpans = Arrays.copyOf(roomSpans, grown);
+                        capacities = Arrays.copyOf(capacities, grown);
+                        weights = Arrays.copyOf(weights, grown);
+                    }
+                    roomSpans[rooms] = nextSpan(lineStart);
+                    roomNames[rooms] = text(roomSpans[rooms]);
+                    capacities[rooms] = (int) nextLong(lineStart);
+                    if (capacities[rooms] <= 5) {
+                        throw error(lineStart, "room capacity must be above the 5 visitor places");
+                    }
+                    weights[rooms] = 1.0;
+                    if (hasMore()) {
+                        weights[rooms] = nextDouble(lineStart);
+                        weighted = true;
+                    }
+                    rooms++;
+                } else if (is(keyStart, keyEnd, "lecturer")) {
+                    if (lecturers == lecturerNames.length) {
+                        lecturerNames = Arrays.copyOf(lecturerNames, lecturers * 2);
+                        lecturerSpans = Arrays.copyOf(lecturerSpans, lecturers * 2);
+                    }
+                    lecturerSpans[lecturers] = nextSpan(lineStart);
+                    lecturerNames[lecturers] = text(lecturerSpans[lecturers]);
+                    lecturers++;
+                } else if (is(keyStart, keyEnd, "timetable")) {
+                    if (timetable == timetableStart.length) {
+                        int grown = timetable * 2;
+                        timetableLecturerSpans = Arrays.copyOf(timetableLecturerSpans, grown);
+                        timetableRoomSpans = Arrays.copyOf(timetableRoomSpans, grown);
+                        timetableStart = Arrays.copyOf(timetableStart, grown);
+                        timetableMinutes = Arrays.copyOf(timetableMinutes, grown);
+                    }
+                    timetableLecturerSpans[timetable] = nextSpan(lineStart);
+                    timetableRoomSpans[timetable] = nextSpan(lineStart);
+                    timetableStart[timetable] = (int) nextLong(lineStart);
+                    timetableMinutes[timetable] = (int) nextLong(lineStart);
+                    timetable++;
+                } else if (is(keyStart, keyEnd, "population")) {
+                    students = (int) nextLong(lineStart);
+                    visitors = (int) nextLong(lineStart);
+                } else if (is(keyStart, keyEnd, "arrivals")) {
+                    studentsPerMinute = nextDouble(lineStart);
+                    visitorsPerMinute = nextDouble(lineStart);
+                } else {
+                    throw error(lineStart, "unknown record type");
+                }
+                skipLine(lineStart);
+            }
+            return this;
+        }
+
+        // Concatenates the chunks in file order; a later population or arrivals line wins
+        static Chunk merge(Chunk[] chunks) {
+            if (chunks.length == 1) {
+                return chunks[0].withDefaults();
+            }
+            Chunk all = new Chunk(null, 0, 0);
+            int rooms = 0, lecturers = 0, timetable = 0;
+            for (Chunk c : chunks) {
+                rooms += c.rooms;
+                lecturers += c.lecturers;
+                timetable += c.timetable;
+            }
+            all.roomNames = new String[rooms];
+            all.roomSpans = new long[rooms];
+            all.capacities = new int[rooms];
+            all.weights = new double[rooms];
+            all.lecturerNames = new String[lecturers];
+            all.lecturerSpans = new long[lecturers];
+            all.timetableLecturerSpans = new long[timetable];
+            all.timetableRoomSpans = new long[timetable];
+            all.timetableStart = new int[timetable];
+            all.timetableMinutes = new int[timetable];
+            for (Chunk c : chunks) {
+                System.arraycopy(c.roomNames, 0, all.roomNames, all.rooms, c.rooms);
+                System.arraycopy(c.roomSpans, 0, all.roomSpans, all.rooms, c.rooms);
+                System.arraycopy(c.capacities, 0, all.capacities, all.rooms, c.rooms);
+                System.arraycopy(c.weights, 0, all.weights, all.rooms, c.rooms);
+                all.rooms += c.rooms;
+                all.weighted |= c.weighted;
+                System.arraycopy(c.lecturerNames, 0, all.lecturerNames, all.lecturers, c.lecturers);
+                System.arraycopy(c.lecturerSpans, 0, all.lecturerSpans, all.lecturers, c.lecturers);
+                all.lecturers += c.lecturers;
+                System.arraycopy(c.timetableLecturerSpans, 0, all.timetableLecturerSpans, all.timetable, c.timetable);
+                System.arraycopy(c.timetableRoomSpans, 0, all.timetableRoomSpans, all.timetable, c.timetable);
+                System.arraycopy(c.timetableStart, 0, all.timetableStart, all.timetable, c.timetable);
+                System.arraycopy(c.timetableMinutes, 0, all.timetableMinutes, all.timetable, c.timetable);
+                all.timetable += c.timetable;
+                if (c.students >= 0) {
+                    all.students = c.students;
+                    all.visitors = c.visitors;
+                }
+                if (c.studentsPerMinute >= 0) {
+                    all.studentsPerMinute = c.studentsPerMinute;
+                    all.visitorsPerMinute = c.visitorsPerMinute;
+                }
+            }
+            return all.withDefaults();
+        }
+
+        // Fills in whatever the file left out from the default campus
+        private Chunk withDefaults() {
+            if (rooms == 0) {
+                throw new IllegalArgumentException("Scenario has no rooms");
+            }
+            if (lecturers == 0) {
+                throw new IllegalArgumentException("Scenario has no lecturers");
+            }
+            if (students < 0) {
+                students = DEFAULT_RECORDS.students;
+                visitors = DEFAULT_RECORDS.visitors;
+            }
+            if (studentsPerMinute < 0) {
+                studentsPerMinute = DEFAULT_RECORDS.studentsPerMinute;
+                visitorsPerMinute = DEFAULT_RECORDS.visitorsPerMinute;
+            }
+            return this;
+        }
+
+        private int skipBlanks() {
+            while (position < end) {
+                byte b = bytes.get(position);
+                if (b != ' ' && b != '\t' && b != '\r') {
+                    break;
+                }
+                position++;
+            }
+            return position;
+        }
+
+        // Ends a token at a blank, a line break or a comment
+        private int skipToken() {
+            while (position < end) {
+                byte b = bytes.get(position);
+                if (b == ' ' || b == '\t' || b == '\r' || b == '\n' || b == '#') {
+                    break;
+                }
+                position++;
+            }
+            return position;
+        }
+
+        private boolean hasMore() {
+            skipBlanks();
+            return position < end && bytes.get(position) != '\n' && bytes.get(position) != '#';
+        }
+
+        private void skipLine(int lineStart) {
+            skipBlanks();
+            if (position < end && bytes.get(position) != '\n' && bytes.get(position) != '#') {
+                throw error(lineStart, "unexpected extra field");
+            }
+            while (position < end && bytes.get(position) != '\n') {
+                position++;
+            }
+            position++;
+        }
+
+        private boolean is(int from, int to, String keyword) {
+            if (to - from != keyword.length()) {
+                return false;
+            }
+            for (int i = 0; i < keyword.length(); i++) {
+                if (bytes.get(from + i) != keyword.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private long nextSpan(int lineStart) {
+            int from = skipBlanks();
+            int to = skipToken();
+            if (to == from) {
+                throw error(lineStart, "missing field");
+            }
+            return span(from, to);
+        }
+
+        private String nextString(int lineStart) {
+            return text(nextSpan(lineStart));
+        }
+
+        private String text(long span) {
+            int length = (int) span;
+            if (length > scratch.length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            bytes.get((int) (span >>> 32), scratch, 0, length);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+
+        private long nextLong(int lineStart) {
+            int from = skipBlanks();
+            int to = skipToken();
+            if (to == from) {
+                throw error(lineStart, "missing number");
+            }
+            long value = 0;
+            for (int i = from; i < to; i++) {
+                int digit = bytes.get(i) - '0';
+                if (digit < 0 || digit > 9 || value > Integer.MAX_VALUE) {
+                    throw error(lineStart, "expected a non-negative integer");
+                }
+                value = value * 10 + digit;
+            }
+            if (value > Integer.MAX_VALUE) {
+                throw error(lineStart, "number too large");
+            }
+            return value;
+        }
+
+        // Rare fields (weights and rates), so going through a String is fine
+        private double nextDouble(int lineStart) {
+            String token = nextString(lineStart);
+            try {
+                double value = Double.parseDouble(token);
+                if (!(value >= 0) || Double.isInfinite(value)) {
+                    throw error(lineStart, "expected a non-negative number");
+                }
+                return value;
+            } catch (NumberFormatException e) {
+                throw error(lineStart, "expected a number, got " + token);
+            }
+        }
+
+        // Only on the error path: count the lines before the offending one
+        private IllegalArgumentException error(int lineStart, String message) {
+            int line = 1;
+            for (int i = 0; i < lineStart; i++) {
+                if (bytes.get(i) == '\n') {
+                    line++;
+                }
+            }
+            return new IllegalArgumentException("Scenario line " + line + ": " + message);
+        }
+    }
+
+    // Writes a synthetic campus, or loads one and reports the time taken.
+    // args: generate file [rooms] [lecturers]  |  load file
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: CampusScenario generate file [rooms] [lecturers] | load file");
+            return;
+        }
+        Path file = Paths.get(args[1]);
+        if (args[0].equals("generate")) {
+            int rooms = args.length > 2 ? Integer.parseInt(args[2]) : 50_000;
+            int lecturers = args.length > 3 ? Integer.parseInt(args[3]) : 10_000;
+            Random random = new Random(42);
+            try (Writer out = new BufferedWriter(new OutputStreamWriter(
+                    Files.newOutputStream(file), StandardCharsets.UTF_8), 1 << 16)) {
+                out.write("# Synthetic campus: " + rooms + " rooms, " + lecturers + " lecturers\n");
+                for (int i = 0; i < rooms; i++) {
+                    out.write("room B" + (i / 100) + "-" + (i % 100) + " " + (20 + 10 * random.nextInt(6))
+                        + " " + (1 + random.nextInt(10)) + "\n");
+                }
+                for (int i = 0; i < lecturers; i++) {
+                    out.write("lecturer L" + i + "\n");
+                }
+                out.write("population " + rooms * 10 + " " + rooms + "\n");
+                out.write("arrivals 600 180\n");
+                // Four lectures a day for every lecturer
+                for (int i = 0; i < lecturers; i++) {
+                    for (int slot = 0; slot < 4; slot++) {
+                        int room = random.nextInt(rooms);
+                        out.write("timetable L" + i + " B" + (room / 100) + "-" + (room % 100) + " "
+                            + (540 + slot * 120) + " 60\n");
+                    }
+                }
+            }
+            System.out.println("Wrote " + Files.size(file) + " bytes to " + file);
+        } else if (args[0].equals("load")) {
+            for (int i = 0; i < 5; i++) {
+                long startTime = System.nanoTime();
+                CampusScenario scenario = load(file);
+                long parsed = System.nanoTime();
+                CampusRegistry<CollegeClassrooms.Classroom> campus = scenario.buildCampus(CollegeClassrooms.Classroom::new);
+                long built = System.nanoTime();
+                System.out.printf("%,d rooms, %,d lecturers, %,d timetable entries: parsed in %d ms, built in %d ms%n",
+                    campus.size(), scenario.lecturers.length, scenario.timetableStart.length,
+                    (parsed - startTime) / 1_000_000, (built - parsed) / 1_000_000);
+            }
+        } else {
+            throw new IllegalArgumentException("Unknown command: " + args[0]);
+        }
+    }
+}
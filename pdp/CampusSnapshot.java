@@ -0,0 +1,82 @@
+import java.lang.invoke.VarHandle;
+import java.util.*;
+
+// Lock-free snapshots of room state for status monitors.
+// Each room keeps a seqlock-style version: the writer, which already holds the room
+// lock, makes it odd before changing the fields and even again afterwards. A reader
+// copies the fields between two reads of the version and retries if it changed, so
+// it never blocks a writer. For the campus-wide view every room is copied and then
+// all versions are checked once more; if none moved, the rows form one consistent
+// cut of the whole campus (a double collect). Otherwise the collect is retried and,
+// if the campus is too busy, each row is still consistent on its own.
+public class CampusSnapshot {
+
+    static final int MAX_COLLECTS = 8;
+
+    // Implemented by a room class; copyTo does plain reads and is retried on a version change
+    interface Source {
+        long version();
+
+        void copyTo(RoomState into);
+    }
+
+    static class RoomState {
+        String name;
+        String lecturer;
+        boolean inSession;
+        int students;
+        int visitors;
+        long version;
+    }
+
+    final RoomState[] rooms;
+    final boolean atomic; // true when all rows are from the same instant
+
+    CampusSnapshot(RoomState[] rooms, boolean atomic) {
+        this.rooms = rooms;
+        this.atomic = atomic;
+    }
+
+    // Status line for monitors, so a reader knows whether rows can be compared with each other
+    String consistency() {
+        return atomic ? "Snapshot: consistent across the campus"
+                      : "Snapshot: each row consistent on its own, rooms changed while collecting";
+    }
+
+    // One room, consistent with itself
+    static void read(Source source, RoomState into) {
+        while (true) {
+            long before = source.version();
+            if ((before & 1) == 0) {
+                source.copyTo(into);
+                // Keep the field reads above from moving below the second version read
+                VarHandle.acquireFence();
+                if (source.version() == before) {
+                    into.version = before;
+                    return;
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    static CampusSnapshot capture(List<? extends Source> sources) {
+        RoomState[] rooms = new RoomState[sources.size()];
+        for (int i = 0; i < rooms.length; i++) {
+            rooms[i] = new RoomState();
+        }
+        for (int collect = 0; collect < MAX_COLLECTS; collect++) {
+            for (int i = 0; i < rooms.length; i++) {
+                read(sources.get(i), rooms[i]);
+            }
+            boolean unchanged = true;
+            for (int i = 0; i < rooms.length && unchanged; i++) {
+                unchanged = sources.get(i).version() == rooms[i].version;
+            }
+            if (unchanged) {
+                return new CampusSnapshot(rooms, true);
+            }
+        }
+        return new CampusSnapshot(rooms, false);
+    }
+}
@@ -0,0 +1,281 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+// Binary trace of a CollegeClassrooms run, and a replayer for it.
+// The recorder appends fixed-size records to a memory-mapped file: reserving a slot is
+// one getAndIncrement and writing it is five absolute puts, with no locks, allocation or
+// system calls on the agent's path. Records are written by Classroom while it holds the
+// room lock, so the order of the records of one room is the order its state changed in.
+// The replayer drives fresh Classroom objects from such a file on a single thread as fast
+// as it can, which makes a run repeatable whatever the thread scheduling was.
+// close writes the number of reserved slots into the header and refuses records from
+// then on; a slot that was reserved but never written is counted as torn on replay
+// instead of ending it.
+//
+// Header:  magic | version | room count | records offset | record count (-1 until closed)
+//          | per room: capacity, name length, name | lecturer count | per lecturer: name length, name
+// The lecturer index of a record refers to the header's lecturer table, so a replay names
+// lecturers as the recorded run did, whatever campus the replaying process has.
+// Record:  nanos since start (long) | agent id | room id | event type | lecturer index (ints)
+public class ClassroomTrace implements AutoCloseable {
+
+    static final int MAGIC = 0x43545231; // "CTR1"
+    static final int VERSION = 3;
+    static final int RECORD_BYTES = 24;
+    // Added to next on close, so no slot can be reserved after the count was taken
+    static final long CLOSED = 1L << 62;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int recordsOffset;
+    private final long capacity; // records that fit in the file
+    private final AtomicLong next = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder refused = new LongAdder(); // arrived after close
+    private volatile boolean closed = false;
+    private final long startNanos = System.nanoTime();
+
+    private ClassroomTrace(FileChannel channel, MappedByteBuffer buffer, int recordsOffset) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.recordsOffset = recordsOffset;
+        this.capacity = (buffer.capacity() - recordsOffset) / RECORD_BYTES;
+    }
+
+    // Creates the file with room ids and names taken from the campus, and the lecturer
+    // names the records' lecturer indexes refer to; bytes is the file size
+    public static ClassroomTrace create(Path file, CampusRegistry<CollegeClassrooms.Classroom> campus,
+                                        String[] lecturers, long bytes) throws IOException {
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Trace file must be under 2 GB: " + bytes);
+        }
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(header);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(campus.size());
+        data.writeInt(0); // records offset, filled in below
+        data.writeInt(-1); // record count, written by close
+        for (int id = 0; id < campus.size(); id++) {
+            byte[] name = campus.nameOf(id).getBytes(StandardCharsets.UTF_8);
+            data.writeInt(campus.get(id).capacity);
+            data.writeShort(name.length);
+            data.write(name);
+        }
+        data.writeInt(lecturers.length);
+        for (String lecturer : lecturers) {
+            byte[] name = lecturer.getBytes(StandardCharsets.UTF_8);
+            data.writeShort(name.length);
+            data.write(name);
+        }
+        // Records start on a cache line boundary
+        int recordsOffset = (header.size() + 63) & ~63;
+        if (recordsOffset + RECORD_BYTES > bytes) {
+            throw new IllegalArgumentException("Trace file too small for the campus: " + bytes);
+        }
+
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+        buffer.put(0, header.toByteArray());
+        buffer.putInt(12, recordsOffset);
+        return new ClassroomTrace(channel, buffer, recordsOffset);
+    }
+
+    // Event types are CollegeClassrooms.STUDENT_ENTERED and friends, never 0 (0 marks an unused slot).
+    // getId rather than threadId so the trace still builds on JDK 17.
+    @SuppressWarnings("deprecation")
+    public void record(int roomId, int type, int lecturer) {
+        if (closed) {
+            refused.increment();
+            return;
+        }
+        long index = next.getAndIncrement();
+        if (index >= capacity) {
+            // Also the reservations that raced with close, which pushed next past the capacity
+            if (index >= CLOSED) {
+                refused.increment();
+            } else {
+                dropped.increment();
+            }
+            return;
+        }
+        int offset = recordsOffset + (int) index * RECORD_BYTES;
+        buffer.putLong(offset, System.nanoTime() - startNanos);
+        buffer.putInt(offset + 8, (int) Thread.currentThread().getId());
+        buffer.putInt(offset + 12, roomId);
+        buffer.putInt(offset + 20, lecturer);
+        buffer.putInt(offset + 16, type); // last, so a half-written record reads as unused
+    }
+
+    public long droppedCount() {
+        return dropped.sum();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        long reserved = Math.min(next.getAndAdd(CLOSED), capacity);
+        buffer.putInt(16, (int) reserved);
+        buffer.force();
+        channel.close();
+        long lost = dropped.sum();
+        if (lost > 0) {
+            System.err.println("Trace file full, dropped " + lost + " records");
+        }
+        long late = refused.sum();
+        if (late > 0) {
+            System.err.println("Trace closed, refused " + late + " records");
+        }
+    }
+
+    static class ReplayResult {
+        long events;
+        long torn; // reserved slots that were never written
+        long nanos;
+        long tracedNanos; // time span covered by the trace
+        CampusRegistry<CollegeClassrooms.Classroom> campus;
+    }
+
+    // Applies every record of the file in order to newly built rooms
+    public static ReplayResult replay(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt(0) != MAGIC) {
+                throw new IllegalArgumentException("Not a classroom trace: " + file);
+            }
+            if (buffer.getInt(4) != VERSION) {
+                throw new IllegalArgumentException("Unsupported trace version " + buffer.getInt(4) + ": " + file);
+            }
+            int roomCount = buffer.getInt(8);
+            int recordsOffset = buffer.getInt(12);
+            long slots = (buffer.capacity() - recordsOffset) / RECORD_BYTES;
+            long count = buffer.getInt(16);
+            if (count < 0) {
+                // Never closed, e.g. the process was killed: up to the last written slot
+                count = slots;
+                while (count > 0 && buffer.getInt(recordsOffset + (int) (count - 1) * RECORD_BYTES + 16) == 0) {
+                    count--;
+                }
+            }
+            if (count > slots) {
+                throw new IllegalArgumentException("Trace claims " + count + " records, file holds " + slots);
+            }
+
+            CampusRegistry<CollegeClassrooms.Classroom> campus = new CampusRegistry<>();
+            buffer.position(20);
+            for (int i = 0; i < roomCount; i++) {
+                int roomCapacity = buffer.getInt();
+                byte[] name = new byte[buffer.getShort()];
+                buffer.get(name);
+                String roomName = new String(name, StandardCharsets.UTF_8);
+                campus.add(roomName, new CollegeClassrooms.Classroom(roomName, roomCapacity));
+            }
+            String[] lecturers = new String[buffer.getInt()];
+            for (int i = 0; i < lecturers.length; i++) {
+                byte[] name = new byte[buffer.getShort()];
+                buffer.get(name);
+                lecturers[i] = new String(name, StandardCharsets.UTF_8);
+            }
+
+            ReplayResult result = new ReplayResult();
+            result.campus = campus;
+            long startTime = System.nanoTime();
+            for (long index = 0; index < count; index++) {
+                int offset = recordsOffset + (int) index * RECORD_BYTES;
+                int type = buffer.getInt(offset + 16);
+                if (type == 0) {
+                    result.torn++; // reserved, but the agent had not written it when the trace closed
+                    continue;
+                }
+                int roomId = buffer.getInt(offset + 12);
+                apply(campus.get(roomId), lecturers, type, buffer.getInt(offset + 20));
+                result.tracedNanos = buffer.getLong(offset);
+                result.events++;
+            }
+            result.nanos = System.nanoTime() - startTime;
+            return result;
+        }
+    }
+
+    // Single threaded, so an entry the room would block on means the trace is inconsistent
+    private static void apply(CollegeClassrooms.Classroom room, String[] lecturers, int type, int lecturer) {
+        try {
+            switch (type) {
+                case CollegeClassrooms.STUDENT_ENTERED:
+                    check(room, !room.inSession && room.studentSemaphore.availablePermits() > 0, type);
+                    room.enterStudent();
+                    break;
+                case CollegeClassrooms.STUDENT_LEFT:
+                    check(room, room.studentCount > 0, type);
+                    room.leaveStudent();
+                    break;
+                case CollegeClassrooms.VISITOR_ENTERED:
+                    check(room, !room.inSession && room.visitorCount < room.visitorPlaces, type);
+                    room.enterVisitor();
+                    break;
+                case CollegeClassrooms.VISITOR_LEFT:
+                    check(room, room.visitorCount > 0, type);
+                    room.leaveVisitor();
+                    break;
+                case CollegeClassrooms.LECTURER_ENTERED:
+                    check(room, room.lecturerSemaphore.availablePermits() > 0, type);
+                    room.enterLecturer(lecturer, lecturer >= 0 && lecturer < lecturers.length
+                        ? lecturers[lecturer] : "L" + lecturer);
+                    break;
+                case CollegeClassrooms.LECTURE_STARTED:
+                    check(room, room.currentLecturer != null, type);
+                    room.startLecture();
+                    break;
+                case CollegeClassrooms.LECTURER_LEFT:
+                    check(room, room.currentLecturer != null, type);
+                    room.leaveLecturer();
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown event type " + type + " in " + room.name);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Replay interrupted", e);
+        }
+    }
+
+    private static void check(CollegeClassrooms.Classroom room, boolean allowed, int type) {
+        if (!allowed) {
+            throw new IllegalStateException("Event " + type + " not possible in " + room.getStatus());
+        }
+    }
+
+    // Replays a trace written with -Dclassroom.trace=<file> and prints the final rooms.
+    // args: file [repeats]
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: ClassroomTrace file [repeats]");
+            return;
+        }
+        Path file = Paths.get(args[0]);
+        int repeats = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        ReplayResult result = null;
+        for (int i = 0; i < repeats; i++) {
+            result = replay(file);
+            System.out.printf("Replay %d: %,d events in %.3f ms (%,.0f events/sec)%n", i + 1, result.events,
+                result.nanos / 1e6, result.events * 1e9 / Math.max(1, result.nanos));
+        }
+        System.out.printf("Trace covers %.1f s of simulated time%n", result.tracedNanos / 1e9);
+        if (result.torn > 0) {
+            System.out.printf("%,d reserved records were never written and were skipped%n", result.torn);
+        }
+        for (int id = 0; id < result.campus.size(); id++) {
+            System.out.println(result.campus.get(id).getStatus());
+        }
+    }
+}
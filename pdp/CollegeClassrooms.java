@@ -1,50 +1,109 @@
+import java.lang.invoke.VarHandle;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.locks.*;
 
 public class CollegeClassrooms {
-    // the Classroom data
-    static final Map<String, Integer> CLASSROOM_CAPACITIES = Map.of(
-        "W201", 60,
-        "W202", 60,
-        "W101", 20,
-        "J5101", 30
-    );
+    // Rooms, lecturers and arrival rates; the default campus unless -Dclassroom.scenario is set
+    static CampusScenario scenario = CampusScenario.DEFAULT;
     
     // Lecturer names
-    static final String[] LECTURERS = {"Osama", "Barry", "Faheem", "Alex", "Ageel", "Waseem"};
+    static String[] LECTURERS = scenario.lecturers;
     
-    // Shared classroom objects
-    static final Map<String, Classroom> classrooms = new ConcurrentHashMap<>();
+    // Shared classroom objects, agents refer to them by int id
+    static CampusRegistry<Classroom> campus = new CampusRegistry<>();
+    
+    // Room ids each lecturer follows in turn, empty for lecturers without a timetable
+    static int[][] timetables;
+    
+    // Creates the thread for every agent; --virtual switches to virtual threads (JDK 21)
+    static ThreadFactory agentThreads = Thread::new;
+    
+    // Event types for the log and the trace, formatted back into text by formatEvent
+    static final int STUDENT_ENTERED = 1, STUDENT_LEFT = 2, VISITOR_ENTERED = 3, VISITOR_LEFT = 4;
+    static final int LECTURER_ENTERED = 5, LECTURE_STARTED = 6, LECTURER_LEFT = 7;
+    
+    // Agents publish enter/leave events here instead of printing them
+    static EventLog log;
+    
+    // Every state change of every room, when -Dclassroom.trace is set
+    static ClassroomTrace trace;
     
     public static void main(String[] args) {
+        if (Arrays.asList(args).contains("--virtual")) {
+            agentThreads = VirtualThreads.factory("agent-");
+        }
+        log = EventLog.fromSystemProperties(CollegeClassrooms::formatEvent);
+        
         // Initializng classrooms
-        for (String room : CLASSROOM_CAPACITIES.keySet()) {
-            classrooms.put(room, new Classroom(room, CLASSROOM_CAPACITIES.get(room)));
+        scenario = CampusScenario.fromSystemProperties();
+        LECTURERS = scenario.lecturers;
+        timetables = scenario.timetableRooms();
+        campus = scenario.buildCampus(Classroom::new);
+        for (int id = 0; id < campus.size(); id++) {
+            campus.get(id).id = id;
+        }
+        // Room ids and lecturer indexes are EventLog arguments
+        if (campus.size() > 1 << 24 || LECTURERS.length > 1 << 24) {
+            throw new IllegalArgumentException("The event log takes at most 2^24 rooms and lecturers");
+        }
+        
+        // Wait-time and contention metrics, over JMX and optionally -Dclassroom.metrics.file
+        List<RoomMetrics> metrics = new ArrayList<>(campus.size());
+        for (int id = 0; id < campus.size(); id++) {
+            metrics.add(campus.get(id).metrics);
+        }
+        RoomMetrics.register("CollegeClassrooms", metrics);
+        RoomMetrics.startDump(metrics);
+        
+        String traceFile = System.getProperty("classroom.trace");
+        if (traceFile != null) {
+            try {
+                long bytes = Long.getLong("classroom.trace.bytes", 256L << 20);
+                trace = ClassroomTrace.create(java.nio.file.Paths.get(traceFile), campus, LECTURERS, bytes);
+            } catch (java.io.IOException e) {
+                e.printStackTrace();
+                return;
+            }
+            // The run only ends with Ctrl-C, so flush the trace on the way out
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    trace.close();
+                } catch (java.io.IOException e) {
+                    e.printStackTrace();
+                }
+            }));
         }
         
         // Starting monitor thread
-        new Thread(new Monitor()).start();
+        agentThreads.newThread(new Monitor()).start();
         
         // Start lecturer threads (one per lecturer)
-        for (String lecturer : LECTURERS) {
-            new Thread(new Lecturer(lecturer)).start();
+        for (int lecturer = 0; lecturer < LECTURERS.length; lecturer++) {
+            agentThreads.newThread(new Lecturer(lecturer)).start();
         }
         
-        // Continuously create student and visitor threads
+        // Continuously create student and visitor threads, at the scenario's arrival rates.
+        // Students pick any room with equal chance, as they always have here, unless a
+        // scenario file gives room weights; the default campus weights are CollegeSimulation's
+        boolean weighted = scenario != CampusScenario.DEFAULT && scenario.weighted;
         Random random = new Random();
+        int meanDelay = (int) Math.max(1, 60_000 / Math.max(1e-3, scenario.studentsPerMinute));
+        double visitorsPerStudent = scenario.visitorsPerMinute / Math.max(1e-3, scenario.studentsPerMinute);
         while (true) {
             try {
                 // Random delay before creating new students/visitors
-                Thread.sleep(random.nextInt(1000) + 500);
+                Thread.sleep(random.nextInt(meanDelay) + meanDelay / 2);
                 
                 // Create new student
-                String randomClassroom = getRandomClassroom();
-                new Thread(new Student(randomClassroom)).start();
+                int studentRoom = weighted ? campus.weightedId() : campus.randomId();
+                agentThreads.newThread(new Student(studentRoom)).start();
                 
                 // Occasionally create visitor
-                if (random.nextDouble() < 0.3) {
-                    new Thread(new Visitor(getRandomClassroom())).start();
+                for (double v = visitorsPerStudent; v > 0; v--) {
+                    if (v >= 1 || random.nextDouble() < v) {
+                        agentThreads.newThread(new Visitor(campus.randomId())).start();
+                    }
                 }
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
@@ -53,110 +112,273 @@ public class CollegeClassrooms {
         }
     }
     
-    private static String getRandomClassroom() {
-        String[] rooms = CLASSROOM_CAPACITIES.keySet().toArray(new String[0]);
-        return rooms[new Random().nextInt(rooms.length)];
+    // room is a campus id, lecturer an index into LECTURERS
+    static void formatEvent(StringBuilder out, int type, int room, int lecturer) {
+        String roomName = campus.nameOf(room);
+        switch (type) {
+            case STUDENT_ENTERED: out.append("Student entered ").append(roomName); break;
+            case STUDENT_LEFT: out.append("Student left ").append(roomName); break;
+            case VISITOR_ENTERED: out.append("Visitor entered ").append(roomName); break;
+            case VISITOR_LEFT: out.append("Visitor left ").append(roomName); break;
+            case LECTURER_ENTERED: out.append(LECTURERS[lecturer]).append(" entered ").append(roomName); break;
+            case LECTURE_STARTED: out.append(LECTURERS[lecturer]).append(" started lecture in ").append(roomName); break;
+            case LECTURER_LEFT: out.append(LECTURERS[lecturer]).append(" left ").append(roomName); break;
+            default: out.append("Unknown event ").append(type);
+        }
     }
     
     // Classroom class representing each of theclassroom
-    static class Classroom {
+    static class Classroom implements CampusSnapshot.Source {
         final String name;
         final int capacity;
+        final int visitorPlaces; // held back from the capacity for visitors, 5 by default
         final Semaphore studentSemaphore;
         final Semaphore lecturerSemaphore = new Semaphore(1); // Binary semaphore for lecturer
         final Lock lock = new ReentrantLock();
-        final Condition lectureCondition = lock.newCondition();
+        // Students only wait for a session to end (the semaphore limits their number);
+        // visitors also wait for one of the visitor places
+        final Condition studentsWaiting = lock.newCondition();
+        final Condition visitorsWaiting = lock.newCondition();
+        final RoomMetrics metrics;
         
+        int id = -1; // campus id, used in trace records
         String currentLecturer = null;
         boolean inSession = false;
         int studentCount = 0;
         int visitorCount = 0;
         
+        // Odd while a write is in progress, read by the Monitor without the lock
+        private volatile long version = 0;
+        
         public Classroom(String name, int capacity) {
+            this(name, capacity, 5);
+        }
+        
+        public Classroom(String name, int capacity, int visitorPlaces) {
+            if (visitorPlaces < 0 || capacity <= visitorPlaces) {
+                throw new IllegalArgumentException(name + ": capacity " + capacity
+                    + " must be above the " + visitorPlaces + " visitor places");
+            }
             this.name = name;
             this.capacity = capacity;
-            this.studentSemaphore = new Semaphore(capacity - 5); // Reserving 5 spots for visitors
+            this.visitorPlaces = visitorPlaces;
+            this.studentSemaphore = new Semaphore(capacity - visitorPlaces); // Reserving spots for visitors
+            this.metrics = new RoomMetrics(name, capacity);
         }
         
         public void enterStudent() throws InterruptedException {
+            long waitStart = System.nanoTime();
             studentSemaphore.acquire();
-            lock.lock();
+            metrics.lock(lock);
             try {
                 while (inSession) {
-                    lectureCondition.await();
+                    studentsWaiting.await();
+                }
+                admitStudent(waitStart);
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        // The entries without waiting, for single-threaded drivers such as DiscreteEventSimulation:
+        // false wherever the blocking form would have to wait
+        public boolean tryEnterStudent() {
+            metrics.lock(lock);
+            try {
+                if (inSession || !studentSemaphore.tryAcquire()) {
+                    return false;
                 }
-                studentCount++;
+                admitStudent(System.nanoTime());
+                return true;
             } finally {
                 lock.unlock();
             }
         }
         
+        public boolean tryEnterVisitor() {
+            metrics.lock(lock);
+            try {
+                if (inSession || visitorCount >= visitorPlaces) {
+                    return false;
+                }
+                admitVisitor(System.nanoTime());
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        // lecturerId is the lecturer's index for the trace, lecturerName what getStatus shows
+        public boolean tryEnterLecturer(int lecturerId, String lecturerName) {
+            if (!lecturerSemaphore.tryAcquire()) {
+                return false;
+            }
+            metrics.lock(lock);
+            try {
+                admitLecturer(lecturerId, lecturerName, System.nanoTime());
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        // With the lock and the student's place held
+        private void admitStudent(long waitStart) {
+            beginWrite();
+            studentCount++;
+            endWrite();
+            metrics.admitted(RoomMetrics.STUDENT, System.nanoTime() - waitStart);
+            metrics.occupancyChanged(studentCount + visitorCount);
+            traceEvent(STUDENT_ENTERED, 0);
+        }
+        
         public void leaveStudent() {
-            lock.lock();
+            metrics.lock(lock);
             try {
+                beginWrite();
                 studentCount--;
-                studentSemaphore.release();
+                endWrite();
+                metrics.occupancyChanged(studentCount + visitorCount);
+                traceEvent(STUDENT_LEFT, 0);
+                studentSemaphore.release(); // wakes the one student waiting for this place
             } finally {
                 lock.unlock();
             }
         }
         
         public void enterVisitor() throws InterruptedException {
-            lock.lock();
+            long waitStart = System.nanoTime();
+            metrics.lock(lock);
             try {
-                while (inSession || visitorCount >= 5) { // Max 5 visitors
-                    lectureCondition.await();
+                while (inSession || visitorCount >= visitorPlaces) {
+                    try {
+                        visitorsWaiting.await();
+                    } catch (InterruptedException e) {
+                        // We may have taken the signal meant for a visitor that can now get in
+                        if (!inSession && visitorCount < visitorPlaces) {
+                            visitorsWaiting.signal();
+                        }
+                        throw e;
+                    }
                 }
-                visitorCount++;
+                admitVisitor(waitStart);
             } finally {
                 lock.unlock();
             }
         }
         
+        private void admitVisitor(long waitStart) {
+            beginWrite();
+            visitorCount++;
+            endWrite();
+            metrics.admitted(RoomMetrics.VISITOR, System.nanoTime() - waitStart);
+            metrics.occupancyChanged(studentCount + visitorCount);
+            traceEvent(VISITOR_ENTERED, 0);
+        }
+        
         public void leaveVisitor() {
-            lock.lock();
+            metrics.lock(lock);
             try {
+                beginWrite();
                 visitorCount--;
-                lectureCondition.signalAll();
+                endWrite();
+                metrics.occupancyChanged(studentCount + visitorCount);
+                traceEvent(VISITOR_LEFT, 0);
+                if (!inSession) {
+                    visitorsWaiting.signal(); // exactly one visitor place was freed
+                }
             } finally {
                 lock.unlock();
             }
         }
         
-        public void enterLecturer(String lecturerName) throws InterruptedException {
+        public void enterLecturer(int lecturerId, String lecturerName) throws InterruptedException {
+            long waitStart = System.nanoTime();
             lecturerSemaphore.acquire();
-            lock.lock();
+            metrics.lock(lock);
             try {
-                currentLecturer = lecturerName;
-                inSession = false; // the Lecture hasn't started yet
-                // No one can enter now, but students can still leave
+                admitLecturer(lecturerId, lecturerName, waitStart);
             } finally {
                 lock.unlock();
             }
         }
         
+        // With the lock and the lecturer semaphore held
+        private void admitLecturer(int lecturerId, String lecturerName, long waitStart) {
+            beginWrite();
+            currentLecturer = lecturerName;
+            inSession = false; // the Lecture hasn't started yet
+            endWrite();
+            metrics.admitted(RoomMetrics.LECTURER, System.nanoTime() - waitStart);
+            if (trace != null) {
+                traceEvent(LECTURER_ENTERED, lecturerId);
+            }
+            // No one can enter now, but students can still leave
+        }
+        
         public void startLecture() {
-            lock.lock();
+            metrics.lock(lock);
             try {
+                beginWrite();
                 inSession = true;
-                lectureCondition.signalAll(); // to  Notify waiting threads
+                endWrite();
+                traceEvent(LECTURE_STARTED, 0);
+                // Nobody can get in now, so there is no one to wake
             } finally {
                 lock.unlock();
             }
         }
         
         public void leaveLecturer() {
-            lock.lock();
+            metrics.lock(lock);
             try {
+                beginWrite();
                 inSession = false;
                 currentLecturer = null;
+                endWrite();
+                traceEvent(LECTURER_LEFT, 0);
                 lecturerSemaphore.release();
-                lectureCondition.signalAll(); // for Notifying waiting threads
+                // Every waiting student already holds a place; visitors get one wakeup per free place
+                studentsWaiting.signalAll();
+                for (int free = visitorPlaces - visitorCount; free > 0; free--) {
+                    visitorsWaiting.signal();
+                }
             } finally {
                 lock.unlock();
             }
         }
         
+        // Called with the lock held, around every change a snapshot reader could see
+        private void beginWrite() {
+            version++;
+            VarHandle.storeStoreFence();
+        }
+        
+        private void endWrite() {
+            version++;
+        }
+        
+        // Also called with the lock held, so one room's records are in the order of its changes
+        private void traceEvent(int type, int lecturer) {
+            if (trace != null) {
+                trace.record(id, type, lecturer);
+            }
+        }
+        
+        @Override
+        public long version() {
+            return version;
+        }
+        
+        @Override
+        public void copyTo(CampusSnapshot.RoomState into) {
+            into.name = name;
+            into.lecturer = currentLecturer;
+            into.inSession = inSession;
+            into.students = studentCount;
+            into.visitors = visitorCount;
+        }
+        
         public String getStatus() {
             lock.lock();
             try {
@@ -174,24 +396,24 @@ public class CollegeClassrooms {
     
     // Student thread
     static class Student implements Runnable {
-        private final String classroomName;
+        private final int classroomId;
         
-        public Student(String classroomName) {
-            this.classroomName = classroomName;
+        public Student(int classroomId) {
+            this.classroomId = classroomId;
         }
         
         @Override
         public void run() {
-            Classroom classroom = classrooms.get(classroomName);
+            Classroom classroom = campus.get(classroomId);
             try {
                 classroom.enterStudent();
-                System.out.println("Student entered " + classroomName);
+                log.publish(EventLog.TRACE, STUDENT_ENTERED, classroomId, 0);
                 
                 // Simulating student staying in class for random time
                 Thread.sleep(new Random().nextInt(5000) + 3000);
                 
                 classroom.leaveStudent();
-                System.out.println("Student left " + classroomName);
+                log.publish(EventLog.TRACE, STUDENT_LEFT, classroomId, 0);
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
             }
@@ -200,24 +422,24 @@ public class CollegeClassrooms {
     
     // Visitor thread
     static class Visitor implements Runnable {
-        private final String classroomName;
+        private final int classroomId;
         
-        public Visitor(String classroomName) {
-            this.classroomName = classroomName;
+        public Visitor(int classroomId) {
+            this.classroomId = classroomId;
         }
         
         @Override
         public void run() {
-            Classroom classroom = classrooms.get(classroomName);
+            Classroom classroom = campus.get(classroomId);
             try {
                 classroom.enterVisitor();
-                System.out.println("Visitor entered " + classroomName);
+                log.publish(EventLog.TRACE, VISITOR_ENTERED, classroomId, 0);
                 
                 // Simulating visitor staying for shorter time
                 Thread.sleep(new Random().nextInt(3000) + 1000);
                 
                 classroom.leaveVisitor();
-                System.out.println("Visitor left " + classroomName);
+                log.publish(EventLog.TRACE, VISITOR_LEFT, classroomId, 0);
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
             }
@@ -226,36 +448,41 @@ public class CollegeClassrooms {
     
     // Lecturer thread
     static class Lecturer implements Runnable {
+        private final int lecturerId;
         private final String name;
         private final Random random = new Random();
+        private int lecturesGiven = 0;
         
-        public Lecturer(String name) {
-            this.name = name;
+        public Lecturer(int lecturerId) {
+            this.lecturerId = lecturerId;
+            this.name = LECTURERS[lecturerId];
         }
         
         @Override
         public void run() {
             while (true) {
                 try {
-                    // Choose a random classroom
-                    String classroomName = getRandomClassroom();
-                    Classroom classroom = classrooms.get(classroomName);
+                    // Next room of the timetable, or a random classroom without one
+                    int[] timetable = timetables[lecturerId];
+                    int classroomId = timetable.length > 0
+                        ? timetable[lecturesGiven++ % timetable.length] : campus.randomId();
+                    Classroom classroom = campus.get(classroomId);
                     
                     // Enter classroom
-                    classroom.enterLecturer(name);
-                    System.out.println(name + " entered " + classroomName);
+                    classroom.enterLecturer(lecturerId, name);
+                    log.publish(EventLog.INFO, LECTURER_ENTERED, classroomId, lecturerId);
                     
                     // Start lecture after a delay
                     Thread.sleep(random.nextInt(2000) + 1000);
                     classroom.startLecture();
-                    System.out.println(name + " started lecture in " + classroomName);
+                    log.publish(EventLog.INFO, LECTURE_STARTED, classroomId, lecturerId);
                     
                     // Simulate lecture duration
                     Thread.sleep(random.nextInt(8000) + 5000);
                     
                     // End lecture and leave
                     classroom.leaveLecturer();
-                    System.out.println(name + " left " + classroomName);
+                    log.publish(EventLog.INFO, LECTURER_LEFT, classroomId, lecturerId);
                     
                     // Wait before going to next classroom
                     Thread.sleep(random.nextInt(5000) + 3000);
@@ -288,9 +515,21 @@ public class CollegeClassrooms {
                 "Room", "Lecturer", "InSes", "Students", "Visitors");
             System.out.println("=============================================================================");
             
-            for (Classroom classroom : classrooms.values()) {
-                System.out.println(classroom.getStatus());
+            // Snapshot without taking any room lock, so reporting never delays an admission
+            List<Classroom> rooms = new ArrayList<>();
+            for (int id = 0; id < campus.size(); id++) {
+                rooms.add(campus.get(id));
+            }
+            CampusSnapshot snapshot = CampusSnapshot.capture(rooms);
+            for (CampusSnapshot.RoomState room : snapshot.rooms) {
+                System.out.println(String.format("%-6s %-8s %-5s %-8d %-8d",
+                    room.name,
+                    room.lecturer != null ? room.lecturer : "None",
+                    room.inSession,
+                    room.students,
+                    room.visitors));
             }
+            System.out.println(snapshot.consistency());
             
             System.out.println("=============================================================================\n");
         }
@@ -162,20 +162,22 @@ public class CollegeSimulation {
         Random random;
         Classroom preferredClassroom;
 
-        public Student(List<Classroom> classrooms) {
+        // weights are the scenario's room preferences, e.g. W201 40%, W202 30%, J5101 20%, W101 10%
+        public Student(List<Classroom> classrooms, double[] weights) {
             this.classrooms = classrooms;
             this.random = new Random();
             // Students tend to prefer certain classrooms (weighted probability)
-            double rand = random.nextDouble();
-            if (rand < 0.4) {
-                preferredClassroom = classrooms.get(0); // W201 (40% chance)
-            } else if (rand < 0.7) {
-                preferredClassroom = classrooms.get(1); // W202 (30% chance)
-            } else if (rand < 0.9) {
-                preferredClassroom = classrooms.get(3); // J5101 (20% chance)
-            } else {
-                preferredClassroom = classrooms.get(2); // W101 (10% chance)
+            double total = 0;
+            for (double weight : weights) {
+                total += weight;
             }
+            double rand = random.nextDouble() * total;
+            int room = 0;
+            while (room < weights.length - 1 && rand >= weights[room]) {
+                rand -= weights[room];
+                room++;
+            }
+            preferredClassroom = classrooms.get(room);
         }
 
         @Override
@@ -285,36 +287,49 @@ public class CollegeSimulation {
         }
     }
 
+    // args: [--virtual] [students]
+    // The campus comes from -Dclassroom.scenario=<file>, or is the default one
     public static void main(String[] args) {
+        boolean virtual = Arrays.asList(args).contains("--virtual");
+        CampusScenario scenario = CampusScenario.fromSystemProperties();
+        int studentCount = scenario.students;
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                studentCount = Integer.parseInt(arg);
+            }
+        }
+
         // Create classrooms
-        List<Classroom> classrooms = new ArrayList<>();
-        classrooms.add(new Classroom("W201", 60));
-        classrooms.add(new Classroom("W202", 60));
-        classrooms.add(new Classroom("W101", 20));
-        classrooms.add(new Classroom("J5101", 30));
+        CampusRegistry<Classroom> campus = scenario.buildCampus(Classroom::new);
+        List<Classroom> classrooms = new ArrayList<>(campus.size());
+        for (int id = 0; id < campus.size(); id++) {
+            classrooms.add(campus.get(id));
+        }
 
         // Create lecturers
-        String[] lecturerNames = {"Osama", "Barry", "Faheem", "Alex", "Ageel", "Waseem"};
+        String[] lecturerNames = scenario.lecturers;
         List<Lecturer> lecturers = new ArrayList<>();
         for (String name : lecturerNames) {
             lecturers.add(new Lecturer(name, classrooms));
         }
 
-        // Create and start threads
-        ExecutorService executor = Executors.newCachedThreadPool();
+        // Create and start threads, one virtual thread per agent with --virtual
+        ExecutorService executor = virtual
+            ? VirtualThreads.perTaskExecutor()
+            : Executors.newCachedThreadPool();
 
         // Start lecturers
         for (Lecturer lecturer : lecturers) {
             executor.execute(lecturer::run);
         }
 
-        // Start students (150 students)
-        for (int i = 0; i < 150; i++) {
-            executor.execute(new Student(classrooms));
+        // Start students (150 students by default)
+        for (int i = 0; i < studentCount; i++) {
+            executor.execute(new Student(classrooms, scenario.weights));
         }
 
-        // Start visitors (15 visitors)
-        for (int i = 0; i < 15; i++) {
+        // Start visitors (15 visitors by default)
+        for (int i = 0; i < scenario.visitors; i++) {
             executor.execute(new Visitor(classrooms));
         }
 
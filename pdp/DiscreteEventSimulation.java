@@ -0,0 +1,409 @@
+import java.util.*;
+
+// The CollegeSimulation campus on a virtual clock.
+// Instead of one thread per agent sleeping in real time, every arrival and departure is
+// an event in a priority queue ordered by virtual time. Every room is a
+// CollegeClassrooms.Classroom driven from this one thread through its tryEnter, leave,
+// startLecture and leaveLecturer methods, so its own rules decide who gets in: students
+// up to the capacity less the visitor places, at most that many visitors, one lecturer
+// at a time, and nobody enters while a lecture is in session. (CollegeSimulation.Classroom
+// lets students use the whole capacity; the occupancy here is that of CollegeClassrooms
+// rooms.) An agent that cannot enter waits in the room's queue for its role until the
+// rule that blocked it changes, or, with a patience set, gives up after that long and
+// comes back later like after a visit.
+// The rooms, student preferences, lecturers and population come from a CampusScenario,
+// -Dclassroom.scenario=<file> or the default campus, and the timings are the ones
+// CollegeSimulation uses, so a simulated hour gives comparable occupancy figures in
+// milliseconds. Students stay 3-8 s,
+// and 8-18 s from their entry when a lecture starts while they are inside, like a
+// CollegeSimulation.Student that finds its room in session.
+//
+// args: [hours] [students] [visitors] [seed]; students and visitors default to the scenario population
+public class DiscreteEventSimulation {
+
+    static final int STUDENT_ARRIVE = 0, STUDENT_LEAVE = 1;
+    static final int VISITOR_ARRIVE = 2, VISITOR_LEAVE = 3;
+    static final int LECTURER_ARRIVE = 4, LECTURER_LEAVE = 5;
+    static final int STUDENT_GIVE_UP = 6, VISITOR_GIVE_UP = 7;
+
+    static final int MAX_VISITORS = 5;
+
+    // One scheduled event; seq keeps events at the same time in scheduling order
+    static class Event implements Comparable<Event> {
+        final long time;
+        final long seq;
+        final int type;
+        final int agent;
+        final int room;
+
+        Event(long time, long seq, int type, int agent, int room) {
+            this.time = time;
+            this.seq = seq;
+            this.type = type;
+            this.agent = agent;
+            this.room = room;
+        }
+
+        @Override
+        public int compareTo(Event other) {
+            int byTime = Long.compare(time, other.time);
+            return byTime != 0 ? byTime : Long.compare(seq, other.seq);
+        }
+    }
+
+    // A Classroom with the queues in front of it and time-weighted occupancy totals
+    static class Room {
+        final String name;
+        final int capacity;
+        final CollegeClassrooms.Classroom classroom;
+        int lecturer = -1; // agent id of the lecturer inside
+
+        // Students inside, so a lecture start only looks at them; removal swaps in the last
+        int[] inside = new int[16];
+        int insideCount = 0;
+
+        final ArrayDeque<Integer> waitingStudents = new ArrayDeque<>();
+        final ArrayDeque<Integer> waitingVisitors = new ArrayDeque<>();
+        final ArrayDeque<Integer> waitingLecturers = new ArrayDeque<>();
+
+        long lastChange = 0;
+        long studentTime = 0, visitorTime = 0, sessionTime = 0;
+        int peakStudents = 0;
+        long lectures = 0, studentEntries = 0, visitorEntries = 0;
+
+        Room(String name, int capacity, int visitorPlaces) {
+            this.name = name;
+            this.capacity = capacity;
+            this.classroom = new CollegeClassrooms.Classroom(name, capacity, visitorPlaces);
+        }
+
+        // Adds the time since the last change at the old occupancy
+        void account(long now) {
+            long elapsed = now - lastChange;
+            studentTime += classroom.studentCount * elapsed;
+            visitorTime += classroom.visitorCount * elapsed;
+            if (classroom.inSession) {
+                sessionTime += elapsed;
+            }
+            lastChange = now;
+        }
+
+        // Returns the student's position in inside
+        int addInside(int agent) {
+            if (insideCount == inside.length) {
+                inside = Arrays.copyOf(inside, insideCount * 2);
+            }
+            inside[insideCount] = agent;
+            return insideCount++;
+        }
+    }
+
+    final List<Room> rooms = new ArrayList<>();
+    final PriorityQueue<Event> events = new PriorityQueue<>();
+    final Random random;
+    long now = 0;
+    long seq = 0;
+
+    final String[] lecturerNames;
+    final int numStudents, numVisitors;
+    final int maxVisitors;
+    final long patienceMillis; // how long students and visitors queue before giving up, -1 for ever
+    final double[] cumulativeWeights;
+    final int[] preferredRoom;
+    final long[] waitingSince;
+    final int[] studentRoom;      // room a student is in, -1 outside
+    final int[] insideIndex;      // the student's position in Room.inside
+    final long[] enteredAt;       // when the student last entered
+    final long[] leaveSeq;        // seq of the student's current leave event, older ones are stale
+    final boolean[] inSessionStay;
+    long studentWaitTotal = 0, visitorWaitTotal = 0, lecturerWaitTotal = 0;
+    long studentsDelayed = 0, visitorsDelayed = 0; // entries that had to queue first
+    long studentsRejected = 0, visitorsRejected = 0; // gave up after patienceMillis
+    final boolean[] queued;
+
+    DiscreteEventSimulation(CampusScenario scenario, int numStudents, int numVisitors, long seed) {
+        this(scenario.roomNames, scenario.capacities, scenario.weights, scenario.lecturers, MAX_VISITORS, -1,
+            numStudents, numVisitors, seed);
+    }
+
+    // All state is per instance, so any number of simulations can run side by side
+    DiscreteEventSimulation(String[] roomNames, int[] capacities, double[] weights, String[] lecturerNames,
+                            int maxVisitors, long patienceMillis, int numStudents, int numVisitors, long seed) {
+        if (roomNames.length != capacities.length || weights.length != capacities.length) {
+            throw new IllegalArgumentException("Need one name, capacity and weight per room");
+        }
+        this.lecturerNames = lecturerNames;
+        this.numStudents = numStudents;
+        this.numVisitors = numVisitors;
+        this.maxVisitors = maxVisitors;
+        this.patienceMillis = patienceMillis;
+        this.random = new Random(seed);
+
+        for (int i = 0; i < roomNames.length; i++) {
+            rooms.add(new Room(roomNames[i], capacities[i], maxVisitors));
+        }
+        double total = Arrays.stream(weights).sum();
+        cumulativeWeights = new double[weights.length];
+        double sum = 0;
+        for (int i = 0; i < weights.length; i++) {
+            sum += weights[i] / total;
+            cumulativeWeights[i] = sum;
+        }
+
+        // Agent ids: lecturers first, then students, then visitors
+        int agents = lecturerNames.length + numStudents + numVisitors;
+        waitingSince = new long[agents];
+        queued = new boolean[agents];
+        studentRoom = new int[agents];
+        Arrays.fill(studentRoom, -1);
+        insideIndex = new int[agents];
+        enteredAt = new long[agents];
+        leaveSeq = new long[agents];
+        inSessionStay = new boolean[agents];
+        preferredRoom = new int[agents];
+
+        for (int i = 0; i < lecturerNames.length; i++) {
+            schedule(0, LECTURER_ARRIVE, i, random.nextInt(rooms.size()));
+        }
+        for (int i = 0; i < numStudents; i++) {
+            int agent = lecturerNames.length + i;
+            // On the default campus these are the CollegeSimulation.Student weights: W201 40%, W202 30%, J5101 20%, W101 10%
+            double rand = random.nextDouble();
+            int room = 0;
+            while (room < rooms.size() - 1 && rand >= cumulativeWeights[room]) {
+                room++;
+            }
+            preferredRoom[agent] = room;
+            schedule(0, STUDENT_ARRIVE, agent, pickStudentRoom(agent));
+        }
+        for (int i = 0; i < numVisitors; i++) {
+            int agent = lecturerNames.length + numStudents + i;
+            schedule(0, VISITOR_ARRIVE, agent, random.nextInt(rooms.size()));
+        }
+    }
+
+    int pickStudentRoom(int agent) {
+        return random.nextDouble() < 0.7 ? preferredRoom[agent] : random.nextInt(rooms.size());
+    }
+
+    void schedule(long time, int type, int agent, int room) {
+        events.add(new Event(time, seq++, type, agent, room));
+    }
+
+    // The stay is counted from the entry; a stay that is already over ends now
+    void scheduleStudentLeave(int agent, int roomIndex, long stay) {
+        leaveSeq[agent] = seq;
+        schedule(Math.max(now, enteredAt[agent] + stay), STUDENT_LEAVE, agent, roomIndex);
+    }
+
+    void run(long untilMillis) {
+        while (!events.isEmpty() && events.peek().time <= untilMillis) {
+            Event event = events.poll();
+            if (event.type == STUDENT_LEAVE && event.seq != leaveSeq[event.agent]) {
+                continue; // replaced by a longer stay when a lecture started
+            }
+            now = event.time;
+            Room room = rooms.get(event.room);
+            room.account(now);
+
+            switch (event.type) {
+                case STUDENT_ARRIVE:
+                    queue(room.waitingStudents, event.agent, STUDENT_GIVE_UP, event.room);
+                    break;
+                case STUDENT_LEAVE:
+                    room.classroom.leaveStudent();
+                    removeInside(room, event.agent);
+                    // Break between classes (2-7 minutes, scaled like CollegeSimulation)
+                    schedule(now + 2000 + random.nextInt(5000), STUDENT_ARRIVE, event.agent, pickStudentRoom(event.agent));
+                    break;
+                case VISITOR_ARRIVE:
+                    queue(room.waitingVisitors, event.agent, VISITOR_GIVE_UP, event.room);
+                    break;
+                case VISITOR_LEAVE:
+                    room.classroom.leaveVisitor();
+                    schedule(now + 3000 + random.nextInt(6000), VISITOR_ARRIVE, event.agent, random.nextInt(rooms.size()));
+                    break;
+                case LECTURER_ARRIVE:
+                    waitingSince[event.agent] = now;
+                    room.waitingLecturers.add(event.agent);
+                    break;
+                case LECTURER_LEAVE:
+                    room.classroom.leaveLecturer();
+                    room.lecturer = -1;
+                    schedule(now + 5000 + random.nextInt(5000), LECTURER_ARRIVE, event.agent, random.nextInt(rooms.size()));
+                    break;
+                case STUDENT_GIVE_UP:
+                    // Only if still queued since the arrival this event was scheduled for
+                    if (queued[event.agent] && waitingSince[event.agent] + patienceMillis == now) {
+                        queued[event.agent] = false;
+                        room.waitingStudents.remove(event.agent);
+                        studentsRejected++;
+                        schedule(now + 2000 + random.nextInt(5000), STUDENT_ARRIVE, event.agent, pickStudentRoom(event.agent));
+                    }
+                    break;
+                case VISITOR_GIVE_UP:
+                    if (queued[event.agent] && waitingSince[event.agent] + patienceMillis == now) {
+                        queued[event.agent] = false;
+                        room.waitingVisitors.remove(event.agent);
+                        visitorsRejected++;
+                        schedule(now + 3000 + random.nextInt(6000), VISITOR_ARRIVE, event.agent, random.nextInt(rooms.size()));
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown event type " + event.type);
+            }
+            admit(event.room);
+        }
+        now = untilMillis;
+        for (Room room : rooms) {
+            room.account(now);
+        }
+    }
+
+    // Puts an arriving student or visitor in the room's queue, with a deadline when patience is set
+    void queue(ArrayDeque<Integer> waiting, int agent, int giveUpType, int roomIndex) {
+        waitingSince[agent] = now;
+        queued[agent] = true;
+        waiting.add(agent);
+        if (patienceMillis >= 0) {
+            schedule(now + patienceMillis, giveUpType, agent, roomIndex);
+        }
+    }
+
+    void removeInside(Room room, int agent) {
+        int last = room.inside[--room.insideCount];
+        room.inside[insideIndex[agent]] = last;
+        insideIndex[last] = insideIndex[agent];
+        studentRoom[agent] = -1;
+    }
+
+    // Lets in whoever the Classroom now allows, in the order they arrived
+    void admit(int roomIndex) {
+        Room room = rooms.get(roomIndex);
+        while (!room.waitingStudents.isEmpty() && room.classroom.tryEnterStudent()) {
+            int agent = room.waitingStudents.poll();
+            queued[agent] = false;
+            studentWaitTotal += now - waitingSince[agent];
+            if (now > waitingSince[agent]) {
+                studentsDelayed++;
+            }
+            room.studentEntries++;
+            room.peakStudents = Math.max(room.peakStudents, room.classroom.studentCount);
+            studentRoom[agent] = roomIndex;
+            insideIndex[agent] = room.addInside(agent);
+            enteredAt[agent] = now;
+            inSessionStay[agent] = false;
+            scheduleStudentLeave(agent, roomIndex, 3000 + random.nextInt(5000));
+        }
+        while (!room.waitingVisitors.isEmpty() && room.classroom.tryEnterVisitor()) {
+            int agent = room.waitingVisitors.poll();
+            queued[agent] = false;
+            visitorWaitTotal += now - waitingSince[agent];
+            if (now > waitingSince[agent]) {
+                visitorsDelayed++;
+            }
+            room.visitorEntries++;
+            schedule(now + 2000 + random.nextInt(4000), VISITOR_LEAVE, agent, roomIndex);
+        }
+        // Lecturer agent ids are their index into lecturerNames
+        if (!room.waitingLecturers.isEmpty() && room.classroom.tryEnterLecturer(
+                room.waitingLecturers.peek(), lecturerNames[room.waitingLecturers.peek()])) {
+            int agent = room.waitingLecturers.poll();
+            lecturerWaitTotal += now - waitingSince[agent];
+            // As in CollegeSimulation.lecturerEnter the lecture starts as the lecturer enters
+            room.classroom.startLecture();
+            room.lecturer = agent;
+            room.lectures++;
+            schedule(now + 10000 + random.nextInt(5000), LECTURER_LEAVE, agent, roomIndex);
+            // Students already inside stay for the lecture (8-18 minutes, scaled)
+            for (int i = 0; i < room.insideCount; i++) {
+                int student = room.inside[i];
+                if (!inSessionStay[student]) {
+                    inSessionStay[student] = true;
+                    scheduleStudentLeave(student, roomIndex, 8000 + random.nextInt(10000));
+                }
+            }
+        }
+    }
+
+    // Campus-wide figures of one run, for comparing replicas
+    static class Summary {
+        double studentOccupancy;   // average share of the student places in use
+        double peakOccupancy;      // highest share of a room's places in use
+        double sessionShare;       // average share of the time a room is in session
+        double studentWaitMillis, visitorWaitMillis, lecturerWaitMillis;
+        double studentsDelayedShare, visitorsDelayedShare;
+        double studentsRejectedShare, visitorsRejectedShare; // attempts that gave up, apart from the delayed
+        double entriesPerHour;
+    }
+
+    Summary summarize(long durationMillis) {
+        Summary summary = new Summary();
+        long capacity = 0, studentTime = 0, sessionTime = 0;
+        long studentEntries = 0, visitorEntries = 0, lectures = 0;
+        for (Room room : rooms) {
+            capacity += room.capacity;
+            studentTime += room.studentTime;
+            sessionTime += room.sessionTime;
+            studentEntries += room.studentEntries;
+            visitorEntries += room.visitorEntries;
+            lectures += room.lectures;
+            summary.peakOccupancy = Math.max(summary.peakOccupancy, room.peakStudents / (double) room.capacity);
+        }
+        summary.studentOccupancy = studentTime / (double) durationMillis / capacity;
+        summary.sessionShare = sessionTime / (double) durationMillis / rooms.size();
+        summary.studentWaitMillis = studentWaitTotal / (double) Math.max(1, studentEntries);
+        summary.visitorWaitMillis = visitorWaitTotal / (double) Math.max(1, visitorEntries);
+        summary.lecturerWaitMillis = lecturerWaitTotal / (double) Math.max(1, lectures);
+        summary.studentsDelayedShare = studentsDelayed / (double) Math.max(1, studentEntries);
+        summary.visitorsDelayedShare = visitorsDelayed / (double) Math.max(1, visitorEntries);
+        summary.studentsRejectedShare = studentsRejected / (double) Math.max(1, studentEntries + studentsRejected);
+        summary.visitorsRejectedShare = visitorsRejected / (double) Math.max(1, visitorEntries + visitorsRejected);
+        summary.entriesPerHour = (studentEntries + visitorEntries) * 3_600_000.0 / durationMillis;
+        return summary;
+    }
+
+    void printStatistics(long durationMillis) {
+        System.out.println("=".repeat(78));
+        System.out.printf("%-6s %-10s %10s %10s %6s %9s %9s %9s%n",
+            "Room", "Lecturer", "AvgStud", "AvgVisit", "Peak", "InSes %", "Lectures", "Entries");
+        System.out.println("=".repeat(78));
+        for (Room room : rooms) {
+            System.out.printf("%-6s %-10s %10.2f %10.2f %6d %9.1f %9d %9d%n",
+                room.name,
+                room.lecturer >= 0 ? lecturerNames[room.lecturer] : "None",
+                room.studentTime / (double) durationMillis,
+                room.visitorTime / (double) durationMillis,
+                room.peakStudents,
+                100.0 * room.sessionTime / durationMillis,
+                room.lectures,
+                room.studentEntries + room.visitorEntries);
+        }
+        System.out.println("=".repeat(78));
+        long studentEntries = rooms.stream().mapToLong(r -> r.studentEntries).sum();
+        long visitorEntries = rooms.stream().mapToLong(r -> r.visitorEntries).sum();
+        long lectures = rooms.stream().mapToLong(r -> r.lectures).sum();
+        System.out.printf("Average wait: students %.0f ms, visitors %.0f ms, lecturers %.0f ms%n",
+            studentWaitTotal / (double) Math.max(1, studentEntries),
+            visitorWaitTotal / (double) Math.max(1, visitorEntries),
+            lecturerWaitTotal / (double) Math.max(1, lectures));
+    }
+
+    public static void main(String[] args) {
+        CampusScenario scenario = CampusScenario.fromSystemProperties();
+        double hours = args.length > 0 ? Double.parseDouble(args[0]) : 1.0;
+        int students = args.length > 1 ? Integer.parseInt(args[1]) : scenario.students;
+        int visitors = args.length > 2 ? Integer.parseInt(args[2]) : scenario.visitors;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 42L;
+        long duration = (long) (hours * 3_600_000);
+
+        long startTime = System.nanoTime();
+        DiscreteEventSimulation simulation = new DiscreteEventSimulation(scenario, students, visitors, seed);
+        simulation.run(duration);
+        long wallMillis = (System.nanoTime() - startTime) / 1_000_000;
+
+        simulation.printStatistics(duration);
+        System.out.printf("Simulated %.2f hours (%d events) in %d millisecs%n",
+            hours, simulation.seq, wallMillis);
+    }
+}
@@ -0,0 +1,388 @@
+package Pdp2;
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.*;
+
+// Scatter/reduce of LargestValue across worker JVMs, in the style of an MPI scatter and reduce.
+// A coordinator splits the job into ranges and sends them to workers over TCP on loopback
+// or Unix domain sockets. Each worker returns {max, evenCount} for its range. A range
+// that fails or times out goes back in the queue for another worker.
+//
+//   worker <address>                                   address: port, host:port or unix:/path
+//   coordinator array <size> <address>...
+//   coordinator file <path> [little|big] <address>...
+//   local <workers> <size>                             spawns the workers itself on loopback
+public class DistributedLargestValue {
+
+    static final byte SCAN_ARRAY = 1;
+    static final byte SCAN_FILE = 2;
+
+    static final long TASK_TIMEOUT_MILLIS = 30_000;
+    static final int MAX_ATTEMPTS = 3;
+
+    // Largest range sent inline in one array frame (256 MB of ints); bigger jobs get more tasks
+    static final int MAX_FRAME_INTS = 1 << 26;
+
+    // ---------------------------------------------------------------- worker
+
+    static void runWorker(String address) throws IOException {
+        SocketAddress bindAddress = parseAddress(address);
+        try (ServerSocketChannel server = bindAddress instanceof UnixDomainSocketAddress
+                ? ServerSocketChannel.open(StandardProtocolFamily.UNIX)
+                : ServerSocketChannel.open()) {
+            if (bindAddress instanceof UnixDomainSocketAddress) {
+                Files.deleteIfExists(((UnixDomainSocketAddress) bindAddress).getPath());
+            }
+            server.bind(bindAddress);
+            // The spawning coordinator reads this line to find out where to connect
+            System.out.println("LISTENING " + formatAddress(server.getLocalAddress()));
+            System.out.flush();
+
+            int numThreads = Runtime.getRuntime().availableProcessors();
+            ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+            while (true) {
+                SocketChannel channel = server.accept();
+                Thread handler = new Thread(() -> serve(channel, executor, numThreads));
+                handler.setDaemon(true);
+                handler.start();
+            }
+        }
+    }
+
+    // Answers requests on one connection until the coordinator closes it
+    static void serve(SocketChannel channel, ExecutorService executor, int numThreads) {
+        try (channel) {
+            ByteBuffer header = ByteBuffer.allocate(1);
+            while (readFully(channel, header.clear())) {
+                long[] result;
+                byte kind = header.get(0);
+                if (kind == SCAN_ARRAY) {
+                    ByteBuffer countBuffer = ByteBuffer.allocate(Integer.BYTES);
+                    readFully(channel, countBuffer);
+                    int count = countBuffer.getInt(0);
+                    if (count < 0 || count > MAX_FRAME_INTS) {
+                        throw new IOException("Array frame of " + count + " ints exceeds " + MAX_FRAME_INTS);
+                    }
+                    ByteBuffer data = ByteBuffer.allocate(Math.toIntExact((long) count * Integer.BYTES));
+                    readFully(channel, data);
+                    int[] array = new int[count];
+                    data.flip();
+                    data.asIntBuffer().get(array);
+                    int[] r = LargestValue.reduce(executor, array, numThreads);
+                    result = new long[]{r[0], r[1]};
+                } else if (kind == SCAN_FILE) {
+                    ByteBuffer fixed = ByteBuffer.allocate(Integer.BYTES);
+                    readFully(channel, fixed);
+                    int pathLength = fixed.getInt(0);
+                    if (pathLength < 0 || pathLength > 4096) {
+                        throw new IOException("Bad path length " + pathLength);
+                    }
+                    ByteBuffer pathBytes = ByteBuffer.allocate(pathLength);
+                    readFully(channel, pathBytes);
+                    ByteBuffer range = ByteBuffer.allocate(2 * Long.BYTES + 1);
+                    readFully(channel, range);
+                    Path path = Paths.get(new String(pathBytes.array(), StandardCharsets.UTF_8));
+                    ByteOrder order = range.get(16) == 0 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+                    try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+                        result = new MappedLargestValue.MappedRegionProcessor(
+                            file, order, range.getLong(0), range.getLong(8)).call();
+                    }
+                } else {
+                    throw new IOException("Unknown request type " + kind);
+                }
+                ByteBuffer reply = ByteBuffer.allocate(2 * Long.BYTES);
+                reply.putLong(result[0]).putLong(result[1]).flip();
+                writeFully(channel, reply);
+            }
+        } catch (IOException e) {
+            System.err.println("Worker connection failed: " + e);
+        }
+    }
+
+    // ----------------------------------------------------------- coordinator
+
+    // One range of the job; attempts counts how often it has been sent
+    static class Task {
+        final long start, end;
+        int attempts = 0;
+
+        Task(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    // Builds the request bytes for a task, so array and file jobs share the dispatch loop
+    interface Request {
+        ByteBuffer encode(Task task);
+    }
+
+    static Request arrayRequest(int[] array) {
+        return task -> {
+            long length = task.end - task.start;
+            if (length > MAX_FRAME_INTS) {
+                throw new IllegalArgumentException("Range of " + length + " ints exceeds one frame");
+            }
+            int count = (int) length;
+            long frameBytes = 1L + Integer.BYTES + (long) count * Integer.BYTES;
+            ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(frameBytes));
+            buffer.put(SCAN_ARRAY).putInt(count);
+            buffer.asIntBuffer().put(array, (int) task.start, count);
+            buffer.position(buffer.limit());
+            return buffer.flip();
+        };
+    }
+
+    static Request fileRequest(Path path, ByteOrder order) {
+        byte[] pathBytes = path.toAbsolutePath().toString().getBytes(StandardCharsets.UTF_8);
+        return task -> {
+            ByteBuffer buffer = ByteBuffer.allocate(1 + Integer.BYTES + pathBytes.length + 2 * Long.BYTES + 1);
+            buffer.put(SCAN_FILE).putInt(pathBytes.length).put(pathBytes)
+                .putLong(task.start).putLong(task.end)
+                .put((byte) (order == ByteOrder.LITTLE_ENDIAN ? 0 : 1));
+            return buffer.flip();
+        };
+    }
+
+    // maxTaskSize bounds each range, e.g. to what fits in one array frame
+    static long[] coordinate(List<String> workerAddresses, long size, long maxTaskSize, Request request)
+            throws InterruptedException {
+        // A few tasks per worker so a failed one only loses a small range
+        long tasks = Math.max(workerAddresses.size() * 4L, size / maxTaskSize + (size % maxTaskSize == 0 ? 0 : 1));
+        int numTasks = Math.toIntExact(Math.max(1, Math.min(size, tasks)));
+        BlockingQueue<Task> pending = new LinkedBlockingQueue<>();
+        // The remainder goes one element each to the first tasks, so no range is longer than
+        // ceil(size / numTasks), which numTasks keeps within maxTaskSize
+        long chunkSize = size / numTasks;
+        long remainder = size % numTasks;
+        for (int i = 0; i < numTasks; i++) {
+            long start = i * chunkSize + Math.min(i, remainder);
+            long end = start + chunkSize + (i < remainder ? 1 : 0);
+            pending.add(new Task(start, end));
+        }
+
+        AtomicLong globalMax = new AtomicLong(Integer.MIN_VALUE);
+        AtomicLong totalEvenCount = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(numTasks);
+        AtomicInteger liveWorkers = new AtomicInteger(workerAddresses.size());
+        AtomicReference<String> failure = new AtomicReference<>();
+
+        ExecutorService dispatchers = Executors.newFixedThreadPool(workerAddresses.size());
+        ExecutorService io = Executors.newCachedThreadPool();
+
+        for (String address : workerAddresses) {
+            dispatchers.execute(() -> {
+                try (SocketChannel channel = SocketChannel.open(parseAddress(address))) {
+                    while (done.getCount() > 0) {
+                        Task task = pending.poll(100, TimeUnit.MILLISECONDS);
+                        if (task == null) {
+                            continue;
+                        }
+                        task.attempts++;
+                        // A range that cannot be encoded is the coordinator's fault, not this worker's
+                        ByteBuffer frame;
+                        try {
+                            frame = request.encode(task);
+                        } catch (RuntimeException e) {
+                            failure.compareAndSet(null, "cannot encode range [" + task.start + ", "
+                                + task.end + "): " + e.getMessage());
+                            drain(done);
+                            return;
+                        }
+                        Future<long[]> exchange = io.submit(() -> exchange(channel, frame));
+                        try {
+                            long[] result = exchange.get(TASK_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                            globalMax.accumulateAndGet(result[0], Math::max);
+                            totalEvenCount.addAndGet(result[1]);
+                            done.countDown();
+                        } catch (ExecutionException | TimeoutException e) {
+                            // Closing the channel also unblocks a read that is still waiting
+                            exchange.cancel(true);
+                            retry(task, pending, failure, done);
+                            throw new IOException("failed on range [" + task.start + ", " + task.end + "): " + e);
+                        }
+                    }
+                } catch (IOException e) {
+                    System.err.println("Dropping worker " + address + ": " + e.getMessage());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    if (liveWorkers.decrementAndGet() == 0 && done.getCount() > 0) {
+                        failure.compareAndSet(null, "all workers failed");
+                        drain(done);
+                    }
+                }
+            });
+        }
+
+        done.await();
+        dispatchers.shutdownNow();
+        io.shutdownNow();
+        if (failure.get() != null) {
+            throw new IllegalStateException("Distributed reduction failed: " + failure.get());
+        }
+        return new long[]{globalMax.get(), totalEvenCount.get()};
+    }
+
+    static void retry(Task task, BlockingQueue<Task> pending, AtomicReference<String> failure, CountDownLatch done) {
+        if (task.attempts < MAX_ATTEMPTS) {
+            pending.add(task);
+        } else {
+            failure.compareAndSet(null, "range [" + task.start + ", " + task.end + ") failed "
+                + task.attempts + " times");
+            drain(done);
+        }
+    }
+
+    static void drain(CountDownLatch latch) {
+        while (latch.getCount() > 0) {
+            latch.countDown();
+        }
+    }
+
+    static long[] exchange(SocketChannel channel, ByteBuffer request) throws IOException {
+        writeFully(channel, request);
+        ByteBuffer reply = ByteBuffer.allocate(2 * Long.BYTES);
+        if (!readFully(channel, reply)) {
+            throw new EOFException("worker closed the connection");
+        }
+        return new long[]{reply.getLong(0), reply.getLong(8)};
+    }
+
+    // ------------------------------------------------------------- plumbing
+
+    // Reads until the buffer is full; false if the peer closed before sending anything
+    static boolean readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        boolean first = true;
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                if (first && buffer.position() == 0) {
+                    return false;
+                }
+                throw new EOFException("connection closed mid-message");
+            }
+            first = false;
+        }
+        return true;
+    }
+
+    static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    static SocketAddress parseAddress(String address) {
+        if (address.startsWith("unix:")) {
+            return UnixDomainSocketAddress.of(address.substring("unix:".length()));
+        }
+        int colon = address.lastIndexOf(':');
+        if (colon < 0) {
+            return new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(address));
+        }
+        return new InetSocketAddress(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+    }
+
+    static String formatAddress(SocketAddress address) {
+        if (address instanceof UnixDomainSocketAddress) {
+            return "unix:" + ((UnixDomainSocketAddress) address).getPath();
+        }
+        InetSocketAddress inet = (InetSocketAddress) address;
+        return inet.getHostString() + ":" + inet.getPort();
+    }
+
+    // Starts a worker JVM with the same java binary and classpath, returns its address
+    static String spawnWorker(List<Process> processes) throws IOException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                DistributedLargestValue.class.getName(), "worker", "0")
+            .redirectError(ProcessBuilder.Redirect.INHERIT)
+            .start();
+        processes.add(process);
+        BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        String line = out.readLine();
+        if (line == null || !line.startsWith("LISTENING ")) {
+            throw new IOException("Worker did not start: " + line);
+        }
+        return line.substring("LISTENING ".length());
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("Usage: DistributedLargestValue worker <address>");
+            System.out.println("       DistributedLargestValue coordinator array <size> <address>...");
+            System.out.println("       DistributedLargestValue coordinator file <path> [little|big] <address>...");
+            System.out.println("       DistributedLargestValue local <workers> <size>");
+            return;
+        }
+
+        switch (args[0]) {
+            case "worker":
+                runWorker(args[1]);
+                return;
+            case "local": {
+                int workers = Integer.parseInt(args[1]);
+                int size = args.length > 2 ? Integer.parseInt(args[2]) : 10_000_000;
+                List<Process> processes = new ArrayList<>();
+                try {
+                    List<String> addresses = new ArrayList<>();
+                    for (int i = 0; i < workers; i++) {
+                        addresses.add(spawnWorker(processes));
+                    }
+                    System.out.println("Workers: " + addresses);
+                    runArray(size, addresses);
+                } finally {
+                    for (Process process : processes) {
+                        process.destroy();
+                    }
+                }
+                return;
+            }
+            case "coordinator":
+                if (args[1].equals("array")) {
+                    runArray(Integer.parseInt(args[2]), Arrays.asList(args).subList(3, args.length));
+                    return;
+                }
+                if (args[1].equals("file")) {
+                    Path path = Paths.get(args[2]);
+                    int first = 3;
+                    ByteOrder order = ByteOrder.LITTLE_ENDIAN;
+                    if (args.length > 3 && (args[3].equals("little") || args[3].equals("big"))) {
+                        order = MappedLargestValue.parseOrder(args[3]);
+                        first = 4;
+                    }
+                    long size = Files.size(path) / Integer.BYTES;
+                    long startTime = System.nanoTime();
+                    long[] result = coordinate(Arrays.asList(args).subList(first, args.length), size,
+                        Long.MAX_VALUE, fileRequest(path, order));
+                    report(size, result, System.nanoTime() - startTime);
+                    return;
+                }
+                throw new IllegalArgumentException("Unknown input: " + args[1] + " (expected array or file)");
+            default:
+                throw new IllegalArgumentException("Unknown mode: " + args[0]);
+        }
+    }
+
+    static void runArray(int size, List<String> addresses) throws InterruptedException {
+        int[] array = new Random().ints(size, 1, 100_000).toArray();
+        long startTime = System.nanoTime();
+        long[] result = coordinate(addresses, size, MAX_FRAME_INTS, arrayRequest(array));
+        report(size, result, System.nanoTime() - startTime);
+    }
+
+    static void report(long size, long[] result, long nanos) {
+        long durationMillis = nanos / 1_000_000;
+        double durationSecs = durationMillis / 1000.0;
+        System.out.println("Elements: " + size);
+        System.out.println("Largest Number: " + result[0]);
+        System.out.println("Total Even Count: " + result[1]);
+        System.out.println(durationMillis + " millisecs (" + durationSecs + ")");
+    }
+}
@@ -0,0 +1,193 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+
+// Asynchronous event log for the simulations.
+// Agents publish fixed-size binary records (timestamp, level, event type and two int
+// arguments such as room id and agent id) into a preallocated multi-producer ring
+// buffer with one CAS and no locks or string building. One background thread drains
+// the ring, formats the records in batches and writes them with a single flush per
+// batch, so printing no longer serializes every agent on the PrintStream lock.
+// When the ring is full, publish drops the record and counts it instead of blocking.
+// An idle consumer parks and raises a flag, and the next publish unparks it. The park
+// is capped at MAX_PARK_NANOS in case a publish misses the flag, so a quiet log still
+// wakes the consumer up to 100 times a second to find the ring empty.
+//
+// The ring follows the bounded MPMC queue of D. Vyukov, with a single consumer:
+// every slot has a sequence number that tells producers and the consumer whose turn it is.
+public class EventLog implements AutoCloseable {
+
+    public static final int TRACE = 0, INFO = 1, WARN = 2, OFF = 3;
+    static final String[] LEVEL_NAMES = {"TRACE", "INFO", "WARN", "OFF"};
+
+    // Turns one record back into text on the consumer thread
+    interface Formatter {
+        void format(StringBuilder out, int type, int a, int b);
+    }
+
+    private final int mask;
+    private final AtomicLongArray sequence;
+    private final long[] timestamps;
+    private final long[] payloads; // level 8 bits | type 8 bits | a 24 bits | b 24 bits
+
+    private final AtomicLong tail = new AtomicLong();
+    private long head = 0; // only the consumer touches head
+    private final LongAdder dropped = new LongAdder();
+
+    private final int level;
+    private final Formatter formatter;
+    private final Writer out;
+    private final Thread consumer;
+    private volatile boolean closed = false;
+    private volatile boolean sleeping = false; // consumer parked on an empty ring
+
+    // Bounds the wait when a record lands between the consumer's last check and its park
+    static final long MAX_PARK_NANOS = 10_000_000;
+
+    public EventLog(int capacity, int level, Formatter formatter, Writer out) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.mask = capacity - 1;
+        this.sequence = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequence.set(i, i);
+        }
+        this.timestamps = new long[capacity];
+        this.payloads = new long[capacity];
+        this.level = level;
+        this.formatter = formatter;
+        this.out = out;
+        this.consumer = new Thread(this::drainLoop, "event-log");
+        this.consumer.setDaemon(true);
+        this.consumer.start();
+    }
+
+    // Level from -Dclassroom.log.level (TRACE, INFO, WARN or OFF), output to
+    // -Dclassroom.log.file when set, otherwise the console
+    public static EventLog fromSystemProperties(Formatter formatter) {
+        String levelName = System.getProperty("classroom.log.level", "TRACE").toUpperCase();
+        int level = -1;
+        for (int i = 0; i < LEVEL_NAMES.length; i++) {
+            if (LEVEL_NAMES[i].equals(levelName)) {
+                level = i;
+            }
+        }
+        if (level < 0) {
+            throw new IllegalArgumentException("Unknown log level: " + levelName);
+        }
+        String file = System.getProperty("classroom.log.file");
+        try {
+            Writer out = file != null
+                ? new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8)
+                : new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8);
+            return new EventLog(1 << 16, level, formatter, new BufferedWriter(out, 1 << 16));
+        } catch (FileNotFoundException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public boolean isEnabled(int eventLevel) {
+        return eventLevel >= level;
+    }
+
+    // a and b must be in 0..2^24-1; returns false if the record was dropped
+    public boolean publish(int eventLevel, int type, int a, int b) {
+        if (eventLevel < level) {
+            return true;
+        }
+        if (((a | b) >>> 24) != 0) {
+            throw new IllegalArgumentException("Event arguments must fit in 24 bits: " + a + ", " + b);
+        }
+        long payload = ((long) eventLevel << 56) | ((long) (type & 0xFF) << 48)
+            | ((long) a << 24) | b;
+        long timestamp = System.currentTimeMillis();
+        while (true) {
+            long position = tail.get();
+            int slot = (int) (position & mask);
+            long turn = sequence.get(slot);
+            if (turn == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    timestamps[slot] = timestamp;
+                    payloads[slot] = payload;
+                    // Hands the slot to the consumer; the release orders the writes above
+                    sequence.lazySet(slot, position + 1);
+                    if (sleeping) {
+                        LockSupport.unpark(consumer);
+                    }
+                    return true;
+                }
+            } else if (turn < position) {
+                // The consumer has not freed this slot yet: the ring is full
+                dropped.increment();
+                return false;
+            }
+            // Another producer took this position, try the next one
+        }
+    }
+
+    public long droppedCount() {
+        return dropped.sum();
+    }
+
+    private void drainLoop() {
+        StringBuilder batch = new StringBuilder(1 << 16);
+        while (true) {
+            int drained = 0;
+            while (drained < 4096) {
+                int slot = (int) (head & mask);
+                if (sequence.get(slot) != head + 1) {
+                    break;
+                }
+                long timestamp = timestamps[slot];
+                long payload = payloads[slot];
+                sequence.lazySet(slot, head + mask + 1); // free for the producer one lap later
+                head++;
+                drained++;
+
+                batch.append(timestamp).append(' ')
+                    .append(LEVEL_NAMES[(int) (payload >>> 56)]).append(' ');
+                formatter.format(batch, (int) (payload >>> 48) & 0xFF,
+                    (int) (payload >>> 24) & 0xFFFFFF, (int) payload & 0xFFFFFF);
+                batch.append('\n');
+            }
+            if (batch.length() > 0) {
+                try {
+                    out.append(batch);
+                    out.flush();
+                } catch (IOException e) {
+                    System.err.println("Event log write failed: " + e);
+                }
+                batch.setLength(0);
+            }
+            if (drained == 0) {
+                if (closed) {
+                    return;
+                }
+                sleeping = true;
+                // Checked again after raising the flag, so a record published meanwhile is not left waiting
+                if (sequence.get((int) (head & mask)) != head + 1 && !closed) {
+                    LockSupport.parkNanos(MAX_PARK_NANOS);
+                }
+                sleeping = false;
+            }
+        }
+    }
+
+    // Stops after the records published so far have been written
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(consumer);
+        try {
+            consumer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        long lost = dropped.sum();
+        if (lost > 0) {
+            System.err.println("Event log dropped " + lost + " records");
+        }
+    }
+}
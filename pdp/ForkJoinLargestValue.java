@@ -0,0 +1,98 @@
+package Pdp2;
+import java.util.concurrent.*;
+import java.util.*;
+
+public class ForkJoinLargestValue {
+
+    // Default number of elements below which a task stops splitting
+    static final int DEFAULT_THRESHOLD = 64 * 1024;
+
+    // Recursive task, splits its range in half until it is small enough
+    // and idle workers steal the halves that have not been started yet
+    @SuppressWarnings("serial") // tasks are never serialized
+    static class ArrayTask extends RecursiveTask<int[]> {
+
+        private final int start, end, threshold;
+        private final int[] array;
+
+        public ArrayTask(int[] array, int start, int end, int threshold) {
+            this.array = array;
+            this.start = start;
+            this.end = end;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected int[] compute() {
+            if (end - start <= threshold) {
+                // Leaf: same scan as the fixed pool version
+                return new LargestValue.ArrayProcessor(array, start, end).call();
+            }
+            int mid = (start + end) >>> 1;
+            ArrayTask left = new ArrayTask(array, start, mid, threshold);
+            ArrayTask right = new ArrayTask(array, mid, end, threshold);
+            left.fork();
+            int[] r = right.compute();
+            int[] l = left.join();
+            return new int[]{Math.max(l[0], r[0]), l[1] + r[1]};
+        }
+    }
+
+    static int[] reduce(ForkJoinPool pool, int[] array, int threshold) {
+        if (threshold < 1) {
+            throw new IllegalArgumentException("threshold must be positive: " + threshold);
+        }
+        return pool.invoke(new ArrayTask(array, 0, array.length, threshold));
+    }
+
+    // args: [size] [threshold] [runs]
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        int threshold = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_THRESHOLD;
+        int runs = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+        int[] array = new Random().ints(size, 1, 100_000).toArray();
+
+        int numThreads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        ForkJoinPool pool = new ForkJoinPool(numThreads);
+
+        long[] fixedTimes = new long[runs];
+        long[] forkJoinTimes = new long[runs];
+        int[] fixed = null, forkJoin = null;
+
+        for (int run = 0; run < runs; run++) {
+            long startTime = System.nanoTime();
+            fixed = LargestValue.reduce(executor, array, numThreads);
+            fixedTimes[run] = System.nanoTime() - startTime;
+
+            startTime = System.nanoTime();
+            forkJoin = reduce(pool, array, threshold);
+            forkJoinTimes[run] = System.nanoTime() - startTime;
+
+            if (fixed[0] != forkJoin[0] || fixed[1] != forkJoin[1]) {
+                throw new IllegalStateException("Results differ: fixed pool " + Arrays.toString(fixed)
+                    + ", fork/join " + Arrays.toString(forkJoin));
+            }
+        }
+
+        executor.shutdown();
+        pool.shutdown();
+
+        System.out.println("Largest Number in the Array: " + forkJoin[0]);
+        System.out.println("Total Even Count: " + forkJoin[1]);
+        System.out.println("Threads: " + numThreads + ", threshold: " + threshold + ", runs: " + runs);
+        printLatency("Fixed pool", fixedTimes);
+        printLatency("Fork/join", forkJoinTimes);
+    }
+
+    // Prints median and tail latency, a straggler chunk shows up in p99 and max
+    static void printLatency(String label, long[] times) {
+        long[] sorted = times.clone();
+        Arrays.sort(sorted);
+        System.out.printf("%-10s p50 %8.3f ms  p99 %8.3f ms  max %8.3f ms%n",
+            label,
+            sorted[sorted.length / 2] / 1e6,
+            sorted[Math.min(sorted.length - 1, (int) Math.ceil(sorted.length * 0.99) - 1)] / 1e6,
+            sorted[sorted.length - 1] / 1e6);
+    }
+}
@@ -0,0 +1,210 @@
+package Pdp2;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.concurrent.*;
+import java.util.*;
+
+// LargestValue with per-phase and per-chunk timings.
+// Phases are generate, submit, compute (until the last chunk has finished) and merge.
+// Every chunk records when it was submitted, started and finished, so queue wait,
+// compute time, elements per second and the skew between chunks can be reported
+// and written out as JSON.
+//
+// args: [size] [numChunks] [json file]
+public class InstrumentedLargestValue {
+
+    // Timestamps of one reduction, filled in by the caller and the chunk tasks
+    static class JobTiming {
+        long generateNanos, submitNanos, computeNanos, mergeNanos;
+        final long[] submitted, started, finished, elements;
+        final boolean[] failed; // threw, so its stamps are incomplete and it is left out of the figures
+        final String[] threads;
+
+        JobTiming(int numChunks) {
+            submitted = new long[numChunks];
+            started = new long[numChunks];
+            finished = new long[numChunks];
+            elements = new long[numChunks];
+            failed = new boolean[numChunks];
+            threads = new String[numChunks];
+        }
+
+        long computeTime(int chunk) {
+            return finished[chunk] - started[chunk];
+        }
+
+        long queueWait(int chunk) {
+            return started[chunk] - submitted[chunk];
+        }
+
+        // Slowest chunk compute time over the median of the chunks that completed,
+        // 1.0 means perfectly even chunks
+        double skew() {
+            long[] times = new long[finished.length];
+            int count = 0;
+            for (int i = 0; i < times.length; i++) {
+                if (!failed[i]) {
+                    times[count++] = computeTime(i);
+                }
+            }
+            if (count == 0) {
+                return 0;
+            }
+            Arrays.sort(times, 0, count);
+            long median = times[count / 2];
+            return median == 0 ? 0 : times[count - 1] / (double) median;
+        }
+
+        String toJson(int[] result) {
+            StringBuilder json = new StringBuilder();
+            json.append("{\n");
+            json.append("  \"max\": ").append(result[0]).append(",\n");
+            json.append("  \"evenCount\": ").append(result[1]).append(",\n");
+            json.append("  \"phasesNanos\": {")
+                .append("\"generate\": ").append(generateNanos)
+                .append(", \"submit\": ").append(submitNanos)
+                .append(", \"compute\": ").append(computeNanos)
+                .append(", \"merge\": ").append(mergeNanos).append("},\n");
+            json.append("  \"skew\": ").append(String.format(Locale.ROOT, "%.3f", skew())).append(",\n");
+            json.append("  \"chunks\": [\n");
+            for (int i = 0; i < finished.length; i++) {
+                json.append("    {\"chunk\": ").append(i)
+                    .append(", \"thread\": ");
+                appendString(json, threads[i]);
+                json.append(", \"elements\": ").append(elements[i]);
+                if (failed[i]) {
+                    json.append(", \"failed\": true");
+                } else {
+                    long compute = computeTime(i);
+                    json.append(", \"queueWaitNanos\": ").append(queueWait(i))
+                        .append(", \"computeNanos\": ").append(compute)
+                        .append(", \"elementsPerSec\": ")
+                        .append(compute == 0 ? 0 : (long) (elements[i] * 1e9 / compute));
+                }
+                json.append(i == finished.length - 1 ? "}\n" : "},\n");
+            }
+            json.append("  ]\n}\n");
+            return json.toString();
+        }
+
+        // JSON string literal, null when the chunk never ran
+        private static void appendString(StringBuilder json, String value) {
+            if (value == null) {
+                json.append("null");
+                return;
+            }
+            json.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    json.append('\\').append(c);
+                } else if (c < 0x20) {
+                    json.append(String.format("\\u%04x", (int) c));
+                } else {
+                    json.append(c);
+                }
+            }
+            json.append('"');
+        }
+    }
+
+    // Wraps the chunk of another kernel and stamps its start and finish into the job timing
+    static class TimedProcessor implements Callable<int[]> {
+        private final Callable<int[]> processor;
+        private final JobTiming timing;
+        private final int chunk;
+
+        TimedProcessor(Callable<int[]> processor, JobTiming timing, int chunk) {
+            this.processor = processor;
+            this.timing = timing;
+            this.chunk = chunk;
+        }
+
+        @Override
+        public int[] call() throws Exception {
+            timing.started[chunk] = System.nanoTime();
+            timing.threads[chunk] = Thread.currentThread().getName();
+            boolean completed = false;
+            try {
+                int[] result = processor.call();
+                completed = true;
+                return result;
+            } finally {
+                timing.finished[chunk] = System.nanoTime();
+                timing.failed[chunk] = !completed;
+            }
+        }
+    }
+
+    // Runs LargestValue.reduce with a kernel that times every chunk, so the chunking and
+    // merge are the plain ones. The kernel is asked for the chunks in order on this thread,
+    // which numbers them and stamps their submission; the phases are then taken from the
+    // last submission and the last finish. Future.get inside reduce gives the
+    // happens-before edge for the timestamps written by the workers.
+    static int[] reduce(ExecutorService executor, int[] array, int numChunks, JobTiming timing) {
+        int[] nextChunk = {0};
+        LargestValue.Kernel kernel = (a, start, end) -> {
+            int chunk = nextChunk[0]++;
+            timing.elements[chunk] = end - start;
+            timing.submitted[chunk] = System.nanoTime();
+            return new TimedProcessor(new LargestValue.ArrayProcessor(a, start, end), timing, chunk);
+        };
+
+        long submitStart = System.nanoTime();
+        int[] result = LargestValue.reduce(executor, array, numChunks, kernel);
+        long mergeEnd = System.nanoTime();
+
+        long computeStart = submitStart;
+        long mergeStart = submitStart;
+        for (int i = 0; i < numChunks; i++) {
+            computeStart = Math.max(computeStart, timing.submitted[i]);
+            mergeStart = Math.max(mergeStart, timing.finished[i]);
+        }
+        mergeStart = Math.max(mergeStart, computeStart);
+        timing.submitNanos = computeStart - submitStart;
+        timing.computeNanos = mergeStart - computeStart;
+        timing.mergeNanos = mergeEnd - mergeStart;
+        return result;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        int numThreads = Runtime.getRuntime().availableProcessors();
+        int numChunks = args.length > 1 ? Integer.parseInt(args[1]) : numThreads;
+        JobTiming timing = new JobTiming(numChunks);
+
+        long generateStart = System.nanoTime();
+        int[] array = new Random().ints(size, 1, 100_000).toArray();
+        timing.generateNanos = System.nanoTime() - generateStart;
+
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        int[] result = reduce(executor, array, numChunks, timing);
+        executor.shutdown();
+
+        System.out.println("Largest Number in the Array: " + result[0]);
+        System.out.println("Total Even Count: " + result[1]);
+        System.out.printf("%-9s %10s%n", "Phase", "millisecs");
+        System.out.printf("%-9s %10.3f%n", "generate", timing.generateNanos / 1e6);
+        System.out.printf("%-9s %10.3f%n", "submit", timing.submitNanos / 1e6);
+        System.out.printf("%-9s %10.3f%n", "compute", timing.computeNanos / 1e6);
+        System.out.printf("%-9s %10.3f%n", "merge", timing.mergeNanos / 1e6);
+        System.out.printf("%-6s %-22s %10s %10s %14s%n", "Chunk", "Thread", "wait ms", "compute ms", "elements/sec");
+        for (int i = 0; i < numChunks; i++) {
+            if (timing.failed[i]) {
+                System.out.printf("%-6d %-22s %10s %10s %14s%n", i, timing.threads[i], "-", "-", "failed");
+                continue;
+            }
+            long compute = timing.computeTime(i);
+            System.out.printf("%-6d %-22s %10.3f %10.3f %,14.0f%n", i, timing.threads[i],
+                timing.queueWait(i) / 1e6, compute / 1e6,
+                compute == 0 ? 0.0 : timing.elements[i] * 1e9 / compute);
+        }
+        System.out.printf("Skew (slowest / median chunk): %.3f%n", timing.skew());
+
+        if (args.length > 2) {
+            Files.write(Paths.get(args[2]), timing.toJson(result).getBytes(StandardCharsets.UTF_8));
+            System.out.println("Wrote " + args[2]);
+        }
+    }
+}
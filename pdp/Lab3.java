@@ -3,6 +3,11 @@ import java.util.concurrent.*;
 import java.util.*;
 
 public class LargestValue {
+
+    // Creates the Callable that scans one chunk, so other kernels can reuse the chunking
+    interface Kernel {
+        Callable<int[]> chunk(int[] array, int start, int end);
+    }
     
     static class ArrayProcessor implements Callable<int[]> {
         
@@ -32,22 +37,20 @@ public class LargestValue {
         }
     }
 
-    public static void main(String[] args) {
-        int size = 10_000_000;  
-        int[] array = new Random().ints(size, 1, 100_000).toArray(); 
+    // Splits the array into numChunks fixed chunks, one ArrayProcessor per chunk
+    static int[] reduce(ExecutorService executor, int[] array, int numChunks) {
+        return reduce(executor, array, numChunks, ArrayProcessor::new);
+    }
 
-        int numThreads = Runtime.getRuntime().availableProcessors(); 
-        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+    static int[] reduce(ExecutorService executor, int[] array, int numChunks, Kernel kernel) {
         List<Future<int[]>> futures = new ArrayList<>();
-        
-        int chunkSize = size / numThreads;
-
-        long startTime = System.nanoTime(); 
+        int size = array.length;
+        int chunkSize = size / numChunks;
 
-        for (int i = 0; i < numThreads; i++) {
+        for (int i = 0; i < numChunks; i++) {
             int start = i * chunkSize;
-            int end = (i == numThreads - 1) ? size : start + chunkSize;
-            futures.add(executor.submit(new ArrayProcessor(array, start, end)));
+            int end = (i == numChunks - 1) ? size : start + chunkSize;
+            futures.add(executor.submit(kernel.chunk(array, start, end)));
         }
 
         int globalMax = Integer.MIN_VALUE;
@@ -64,6 +67,21 @@ public class LargestValue {
                 e.printStackTrace();
             }
         }
+        return new int[]{globalMax, totalEvenCount};
+    }
+
+    public static void main(String[] args) {
+        int size = 10_000_000;  
+        int[] array = new Random().ints(size, 1, 100_000).toArray(); 
+
+        // Thread and chunk counts come from the AutoTuner profile when one has been calibrated
+        AutoTuner.Setting setting = AutoTuner.load().lookup(size);
+        int numThreads = setting.threads; 
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+
+        long startTime = System.nanoTime(); 
+
+        int[] result = reduce(executor, array, setting.chunks);
 
         executor.shutdown();
         long endTime = System.nanoTime(); 
@@ -72,8 +90,8 @@ public class LargestValue {
         double durationSecs = durationMillis / 1000.0; 
 
         
-        System.out.println("Largest Number in the Array: " + globalMax);
-        System.out.println("Total Even Count: " + totalEvenCount);
+        System.out.println("Largest Number in the Array: " + result[0]);
+        System.out.println("Total Even Count: " + result[1]);
         System.out.println(durationMillis + " millisecs (" + durationSecs + ")");
     }
 }
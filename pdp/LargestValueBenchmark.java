@@ -0,0 +1,229 @@
+package Pdp2;
+import java.lang.management.*;
+import java.util.concurrent.*;
+import java.util.stream.IntStream;
+import java.util.*;
+
+// Warmed-up throughput comparison of the LargestValue reduction strategies.
+// Each combination of size, threads and chunk size gets its own pools, a number of
+// untimed warm-up iterations and then timed iterations of a fixed length, like JMH does.
+//
+// args: [--size 1000000,10000000] [--threads 1,8] [--chunk 0,65536]
+//       [--strategies sequential,fixed,stream,forkjoin,reusable,vector]
+//       [--warmup 5] [--iterations 10] [--time 1000]
+// chunk 0 means one chunk per thread for the fixed pool and the default threshold for fork/join.
+public class LargestValueBenchmark {
+
+    interface Strategy {
+        int[] run(int[] array);
+    }
+
+    // Pools for one parameter combination, shut down before moving to the next
+    static class Pools implements AutoCloseable {
+        final ExecutorService executor;
+        final ForkJoinPool forkJoinPool;
+        final LargestValueReducer reducer;
+
+        Pools(int threads) {
+            executor = Executors.newFixedThreadPool(threads);
+            forkJoinPool = new ForkJoinPool(threads);
+            reducer = new LargestValueReducer(threads);
+        }
+
+        @Override
+        public void close() {
+            executor.shutdown();
+            forkJoinPool.shutdown();
+            reducer.close();
+        }
+    }
+
+    static Strategy strategy(String name, Pools pools, int threads, int chunk) {
+        switch (name) {
+            case "sequential":
+                return array -> new LargestValue.ArrayProcessor(array, 0, array.length).call();
+            case "fixed":
+                return array -> LargestValue.reduce(pools.executor, array, chunkCount(array.length, threads, chunk));
+            case "stream":
+                // Two passes, the way this is usually written with streams
+                return array -> pools.forkJoinPool.submit(() -> new int[]{
+                    IntStream.of(array).parallel().max().orElse(Integer.MIN_VALUE),
+                    (int) IntStream.of(array).parallel().filter(v -> v % 2 == 0).count()
+                }).join();
+            case "forkjoin":
+                int threshold = chunk > 0 ? chunk : ForkJoinLargestValue.DEFAULT_THRESHOLD;
+                return array -> ForkJoinLargestValue.reduce(pools.forkJoinPool, array, threshold);
+            case "reusable":
+                int[] result = new int[2];
+                return array -> {
+                    pools.reducer.reduce(array, result);
+                    return result;
+                };
+            case "vector":
+                return array -> LargestValue.reduce(pools.executor, array,
+                    chunkCount(array.length, threads, chunk), VectorLargestValue.VectorProcessor::new);
+            default:
+                throw new IllegalArgumentException("Unknown strategy: " + name);
+        }
+    }
+
+    static int chunkCount(int size, int threads, int chunk) {
+        if (chunk <= 0) {
+            return threads;
+        }
+        return Math.max(1, (size + chunk - 1) / chunk);
+    }
+
+    public static void main(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        options.put("size", "1000000,10000000");
+        options.put("threads", String.valueOf(Runtime.getRuntime().availableProcessors()));
+        options.put("chunk", "0");
+        options.put("strategies", "sequential,fixed,stream,forkjoin,reusable");
+        options.put("warmup", "5");
+        options.put("iterations", "10");
+        options.put("time", "1000");
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--") || !options.containsKey(args[i].substring(2))) {
+                throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+
+        int[] sizes = parseInts(options.get("size"));
+        int[] threadCounts = parseInts(options.get("threads"));
+        int[] chunks = parseInts(options.get("chunk"));
+        String[] strategies = options.get("strategies").split(",");
+        int warmup = Integer.parseInt(options.get("warmup"));
+        int iterations = Integer.parseInt(options.get("iterations"));
+        long iterationNanos = Long.parseLong(options.get("time")) * 1_000_000;
+
+        if (Arrays.asList(strategies).contains("vector")
+                && !ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            throw new IllegalArgumentException("The vector strategy needs --add-modules jdk.incubator.vector");
+        }
+
+        System.out.printf("%-10s %11s %7s %7s %14s %10s %12s %10s %6s%n",
+            "Strategy", "Size", "Threads", "Chunk", "ops/s", "+- 99.9%", "alloc MB/s", "B/op", "GCs");
+
+        for (int size : sizes) {
+            int[] array = new Random(42).ints(size, 1, 100_000).toArray();
+            int[] expected = new LargestValue.ArrayProcessor(array, 0, size).call();
+
+            for (int threads : threadCounts) {
+                for (int chunk : chunks) {
+                    try (Pools pools = new Pools(threads)) {
+                        for (String name : strategies) {
+                            Strategy strategy = strategy(name, pools, threads, chunk);
+                            int[] result = strategy.run(array);
+                            if (result[0] != expected[0] || result[1] != expected[1]) {
+                                throw new IllegalStateException(name + " returned " + Arrays.toString(result)
+                                    + ", expected " + Arrays.toString(expected));
+                            }
+
+                            for (int i = 0; i < warmup; i++) {
+                                measure(strategy, array, iterationNanos);
+                            }
+
+                            double[] throughput = new double[iterations];
+                            long operations = 0, allocated = 0, gcCount = 0, elapsed = 0;
+                            for (int i = 0; i < iterations; i++) {
+                                long[] m = measure(strategy, array, iterationNanos);
+                                throughput[i] = m[0] * 1e9 / m[1];
+                                operations += m[0];
+                                elapsed += m[1];
+                                allocated += m[2];
+                                gcCount += m[3];
+                            }
+
+                            System.out.printf("%-10s %11d %7d %7d %14.3f %10.3f %12.2f %10d %6d%n",
+                                name, size, threads, chunk,
+                                mean(throughput), error(throughput),
+                                allocated / (elapsed / 1e9) / (1024 * 1024),
+                                allocated / Math.max(1, operations),
+                                gcCount);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // Runs the strategy for one iteration, returns {operations, nanos, bytes allocated, gc count}
+    static long[] measure(Strategy strategy, int[] array, long iterationNanos) {
+        long allocatedBefore = allocatedBytes();
+        long gcBefore = gcCount();
+        long operations = 0;
+        long start = System.nanoTime();
+        long now;
+        do {
+            consume(strategy.run(array));
+            operations++;
+            now = System.nanoTime();
+        } while (now - start < iterationNanos);
+        return new long[]{operations, now - start, allocatedBytes() - allocatedBefore, gcCount() - gcBefore};
+    }
+
+    static volatile int sink;
+
+    // Stops the JIT from removing a reduction whose result is never read
+    static void consume(int[] result) {
+        sink = result[0] ^ result[1];
+    }
+
+    // Bytes allocated by all live threads, including the pool workers
+    static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return 0;
+        }
+        long total = 0;
+        for (long bytes : ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            if (bytes > 0) {
+                total += bytes;
+            }
+        }
+        return total;
+    }
+
+    static long gcCount() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionCount());
+        }
+        return total;
+    }
+
+    static double mean(double[] values) {
+        double sum = 0;
+        for (double v : values) {
+            sum += v;
+        }
+        return sum / values.length;
+    }
+
+    // Half-width of the 99.9% confidence interval of the mean, as JMH prints in its error
+    // column: Student t for values.length - 1 degrees of freedom. Past 30 the quantile of
+    // the next lower tabulated df is used, which is never below the exact one.
+    static double error(double[] values) {
+        if (values.length < 2) {
+            return 0;
+        }
+        double mean = mean(values);
+        double squares = 0;
+        for (double v : values) {
+            squares += (v - mean) * (v - mean);
+        }
+        int df = values.length - 1;
+        double[] t = {636.619, 31.599, 12.924, 8.610, 6.869, 5.959, 5.408, 5.041, 4.781, 4.587,
+            4.437, 4.318, 4.221, 4.140, 4.073, 4.015, 3.965, 3.922, 3.883, 3.850,
+            3.819, 3.792, 3.768, 3.745, 3.725, 3.707, 3.690, 3.674, 3.659, 3.646};
+        double quantile = df <= t.length ? t[df - 1]
+            : df < 40 ? 3.646 : df < 60 ? 3.551 : df < 120 ? 3.460 : 3.373;
+        return quantile * Math.sqrt(squares / df) / Math.sqrt(values.length);
+    }
+
+    static int[] parseInts(String list) {
+        return Arrays.stream(list.split(",")).mapToInt(s -> Integer.parseInt(s.trim().replace("_", ""))).toArray();
+    }
+}
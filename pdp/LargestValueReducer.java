@@ -0,0 +1,212 @@
+package Pdp2;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.*;
+
+// Long-lived reducer for running LargestValue over many batches.
+// The worker threads are started once and wait on a Phaser between batches,
+// each writes its result into its own preallocated slot, so a reduction
+// allocates no tasks, futures or result arrays.
+public class LargestValueReducer implements AutoCloseable {
+
+    // Slots are spaced a cache line apart so workers do not false-share
+    private static final int STRIDE = 16;
+
+    private final int numThreads;
+    private final Thread[] workers;
+    private final Phaser phaser;
+    private final int[] maxSlots;
+    private final int[] evenSlots;
+
+    // Written by the caller before the start phase, read by workers after it
+    private int[] array;
+    private boolean fill = false;
+    private long seed;
+    private int origin, bound;
+    private boolean closed = false;
+
+    // First exception a worker hit in the current batch, rethrown by the caller
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    public LargestValueReducer(int numThreads) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("numThreads must be positive: " + numThreads);
+        }
+        this.numThreads = numThreads;
+        this.phaser = new Phaser(numThreads + 1); // workers plus the calling thread
+        this.maxSlots = new int[numThreads * STRIDE];
+        this.evenSlots = new int[numThreads * STRIDE];
+        this.workers = new Thread[numThreads];
+        for (int i = 0; i < numThreads; i++) {
+            int index = i;
+            workers[i] = new Thread(() -> work(index), "reducer-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    private void work(int index) {
+        while (true) {
+            // Start phase: wait for the caller to publish the next array
+            phaser.arriveAndAwaitAdvance();
+            if (closed) {
+                phaser.arriveAndDeregister();
+                return;
+            }
+            try {
+                batch(index);
+            } catch (Throwable t) {
+                // Still arrive below, a worker that died here would leave the caller waiting forever
+                failure.compareAndSet(null, t);
+            }
+            // Done phase: the caller merges once every worker has arrived
+            phaser.arriveAndAwaitAdvance();
+        }
+    }
+
+    private void batch(int index) {
+        int[] data = array;
+        int chunkSize = data.length / numThreads;
+        int start = index * chunkSize;
+        int end = (index == numThreads - 1) ? data.length : start + chunkSize;
+
+        if (fill) {
+            // Generate the chunk on the thread that will reduce it, so it lands in its cache
+            ParallelGenerator.fillRange(data, start, start, end, seed, origin, bound);
+            return;
+        }
+
+        int max = Integer.MIN_VALUE;
+        int evenCount = 0;
+        for (int i = start; i < end; i++) {
+            if (data[i] > max) {
+                max = data[i];
+            }
+            if (data[i] % 2 == 0) {
+                evenCount++;
+            }
+        }
+        maxSlots[index * STRIDE] = max;
+        evenSlots[index * STRIDE] = evenCount;
+    }
+
+    // Called after the done phase, when every worker has arrived
+    private void rethrowFailure() {
+        Throwable t = failure.getAndSet(null);
+        if (t == null) {
+            return;
+        }
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        throw new IllegalStateException("Reducer worker failed", t);
+    }
+
+    // Reduces array into result[0] = max and result[1] = even count.
+    // Calls are serialized, the workers handle one batch at a time.
+    public synchronized void reduce(int[] array, int[] result) {
+        Objects.requireNonNull(array, "array");
+        Objects.requireNonNull(result, "result");
+        if (result.length < 2) {
+            throw new IllegalArgumentException("result needs 2 elements, has " + result.length);
+        }
+        if (closed) {
+            throw new IllegalStateException("Reducer is closed");
+        }
+        this.array = array;
+        phaser.arriveAndAwaitAdvance(); // start
+        phaser.arriveAndAwaitAdvance(); // done
+        this.array = null;
+        rethrowFailure();
+
+        int globalMax = Integer.MIN_VALUE;
+        int totalEvenCount = 0;
+        for (int i = 0; i < numThreads; i++) {
+            if (maxSlots[i * STRIDE] > globalMax) {
+                globalMax = maxSlots[i * STRIDE];
+            }
+            totalEvenCount += evenSlots[i * STRIDE];
+        }
+        result[0] = globalMax;
+        result[1] = totalEvenCount;
+    }
+
+    // Fills array with seeded data, each worker writing the chunk it reduces
+    public synchronized void fill(int[] array, long seed, int origin, int bound) {
+        Objects.requireNonNull(array, "array");
+        // Checked here, SplittableRandom would otherwise throw on every worker
+        if (origin >= bound) {
+            throw new IllegalArgumentException("origin must be below bound: " + origin + " >= " + bound);
+        }
+        if (closed) {
+            throw new IllegalStateException("Reducer is closed");
+        }
+        this.array = array;
+        this.fill = true;
+        this.seed = seed;
+        this.origin = origin;
+        this.bound = bound;
+        phaser.arriveAndAwaitAdvance(); // start
+        phaser.arriveAndAwaitAdvance(); // done
+        this.fill = false;
+        this.array = null;
+        rethrowFailure();
+    }
+
+    public int[] reduce(int[] array) {
+        int[] result = new int[2];
+        reduce(array, result);
+        return result;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        // Release the workers from their start phase so they see the flag and deregister
+        phaser.arriveAndDeregister();
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // args: [batchSize] [batches]
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int batches = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        int[][] data = new int[8][];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = new Random().ints(size, 1, 100_000).toArray();
+        }
+
+        int numThreads = Runtime.getRuntime().availableProcessors();
+        int[] result = new int[2];
+        long checksum = 0;
+
+        try (LargestValueReducer reducer = new LargestValueReducer(numThreads)) {
+            long startTime = System.nanoTime();
+            for (int i = 0; i < batches; i++) {
+                reducer.reduce(data[i % data.length], result);
+                checksum += result[0] + result[1];
+            }
+            long endTime = System.nanoTime();
+
+            double durationSecs = (endTime - startTime) / 1e9;
+            System.out.println("Largest Number in the last batch: " + result[0]);
+            System.out.println("Even Count in the last batch: " + result[1]);
+            System.out.println("Checksum: " + checksum);
+            System.out.printf("%d batches of %d in %.3f secs (%.0f reductions/sec)%n",
+                batches, size, durationSecs, batches / durationSecs);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package Pdp2;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.concurrent.*;
+import java.util.*;
+
+// Scans a binary file of ints through memory mappings instead of an in-heap array
+public class MappedLargestValue {
+
+    // A single MappedByteBuffer is limited to 2 GB, so each worker maps its region in windows
+    static final long WINDOW_BYTES = 1L << 30;
+
+    static class MappedRegionProcessor implements Callable<long[]> {
+
+        private final FileChannel channel;
+        private final ByteOrder order;
+        private final long start, end; // element indexes, not bytes
+
+        public MappedRegionProcessor(FileChannel channel, ByteOrder order, long start, long end) {
+            this.channel = channel;
+            this.order = order;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public long[] call() throws IOException {
+            int max = Integer.MIN_VALUE;
+            long evenCount = 0;
+
+            long position = start * Integer.BYTES;
+            long limit = end * Integer.BYTES;
+            while (position < limit) {
+                long length = Math.min(WINDOW_BYTES, limit - position);
+                IntBuffer ints = channel.map(FileChannel.MapMode.READ_ONLY, position, length)
+                    .order(order)
+                    .asIntBuffer();
+                int count = ints.remaining();
+                for (int i = 0; i < count; i++) {
+                    int value = ints.get(i);
+                    if (value > max) {
+                        max = value;
+                    }
+                    if (value % 2 == 0) {
+                        evenCount++;
+                    }
+                }
+                position += length;
+            }
+            return new long[]{max, evenCount};
+        }
+    }
+
+    static long[] reduce(ExecutorService executor, FileChannel channel, ByteOrder order, int numThreads)
+            throws IOException {
+        long size = channel.size() / Integer.BYTES;
+        List<Future<long[]>> futures = new ArrayList<>();
+        long chunkSize = size / numThreads;
+
+        for (int i = 0; i < numThreads; i++) {
+            long start = i * chunkSize;
+            long end = (i == numThreads - 1) ? size : start + chunkSize;
+            futures.add(executor.submit(new MappedRegionProcessor(channel, order, start, end)));
+        }
+
+        long globalMax = Integer.MIN_VALUE;
+        long totalEvenCount = 0;
+
+        for (Future<long[]> future : futures) {
+            try {
+                long[] result = future.get();
+                if (result[0] > globalMax) {
+                    globalMax = result[0];
+                }
+                totalEvenCount += result[1];
+            } catch (InterruptedException | ExecutionException e) {
+                e.printStackTrace();
+            }
+        }
+        return new long[]{globalMax, totalEvenCount};
+    }
+
+    // Writes count random ints, used to create test inputs larger than the heap
+    static void generate(Path file, long count, ByteOrder order) throws IOException {
+        Random random = new Random();
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 20).order(order);
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (long i = 0; i < count; i++) {
+                if (!buffer.hasRemaining()) {
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        out.write(buffer);
+                    }
+                    buffer.clear();
+                }
+                buffer.putInt(random.nextInt(99_999) + 1);
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+        }
+    }
+
+    // args: scan <file> [little|big]
+    //       generate <file> <count> [little|big]
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: MappedLargestValue scan <file> [little|big]");
+            System.out.println("       MappedLargestValue generate <file> <count> [little|big]");
+            return;
+        }
+        Path file = Paths.get(args[1]);
+
+        if (args[0].equals("generate")) {
+            ByteOrder order = parseOrder(args.length > 3 ? args[3] : "little");
+            generate(file, Long.parseLong(args[2]), order);
+            System.out.println("Wrote " + args[2] + " ints to " + file);
+            return;
+        }
+
+        ByteOrder order = parseOrder(args.length > 2 ? args[2] : "little");
+        int numThreads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() % Integer.BYTES != 0) {
+                throw new IOException(file + " is not a whole number of ints (" + channel.size() + " bytes)");
+            }
+            long startTime = System.nanoTime();
+            long[] result = reduce(executor, channel, order, numThreads);
+            long endTime = System.nanoTime();
+
+            long durationMillis = (endTime - startTime) / 1_000_000;
+            double durationSecs = durationMillis / 1000.0;
+
+            System.out.println("Elements: " + channel.size() / Integer.BYTES);
+            System.out.println("Largest Number in the File: " + result[0]);
+            System.out.println("Total Even Count: " + result[1]);
+            System.out.println(durationMillis + " millisecs (" + durationSecs + ")");
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    static ByteOrder parseOrder(String name) {
+        switch (name) {
+            case "little":
+                return ByteOrder.LITTLE_ENDIAN;
+            case "big":
+                return ByteOrder.BIG_ENDIAN;
+            default:
+                throw new IllegalArgumentException("Unknown byte order: " + name + " (expected little or big)");
+        }
+    }
+}
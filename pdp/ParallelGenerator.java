@@ -0,0 +1,106 @@
+package Pdp2;
+import java.util.concurrent.*;
+import java.util.*;
+
+// Seeded parallel data generation for LargestValue.
+// Element i always comes from the SplittableRandom of block i / BLOCK_SIZE, seeded from
+// the job seed and the block number, so the same seed gives the same data no matter
+// how many threads fill it or where the chunk boundaries fall.
+public class ParallelGenerator {
+
+    static final int BLOCK_SIZE = 4096;
+
+    // Fills target[offset ..] with the values of global indexes [from, to)
+    static void fillRange(int[] target, int offset, long from, long to, long seed, int origin, int bound) {
+        long index = from;
+        while (index < to) {
+            long block = index / BLOCK_SIZE;
+            long blockStart = block * BLOCK_SIZE;
+            long blockEnd = Math.min(blockStart + BLOCK_SIZE, to);
+            SplittableRandom random = new SplittableRandom(blockSeed(seed, block));
+            // A range that starts inside a block has to step over the values before it
+            for (long skip = blockStart; skip < index; skip++) {
+                random.nextInt(origin, bound);
+            }
+            for (; index < blockEnd; index++) {
+                target[offset + (int) (index - from)] = random.nextInt(origin, bound);
+            }
+        }
+    }
+
+    // SplitMix64 finalizer, spreads consecutive block numbers over unrelated seeds
+    static long blockSeed(long seed, long block) {
+        long z = seed + (block + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // Fills the array in numChunks tasks, using the same chunk boundaries as LargestValue.reduce
+    static void fill(ExecutorService executor, int[] array, int numChunks, long seed, int origin, int bound) {
+        List<Future<?>> futures = new ArrayList<>();
+        int size = array.length;
+        int chunkSize = size / numChunks;
+
+        for (int i = 0; i < numChunks; i++) {
+            int start = i * chunkSize;
+            int end = (i == numChunks - 1) ? size : start + chunkSize;
+            futures.add(executor.submit(() -> fillRange(array, start, start, end, seed, origin, bound)));
+        }
+        await(futures);
+    }
+
+    // One task per segment of a SegmentedIntArray
+    static void fill(ExecutorService executor, SegmentedIntArray array, long seed, int origin, int bound) {
+        List<Future<?>> futures = new ArrayList<>();
+        for (int s = 0; s < array.segmentCount(); s++) {
+            int[] segment = array.segment(s);
+            long segmentStart = (long) s << array.segmentShift();
+            futures.add(executor.submit(() ->
+                fillRange(segment, 0, segmentStart, segmentStart + segment.length, seed, origin, bound)));
+        }
+        await(futures);
+    }
+
+    static void await(List<Future<?>> futures) {
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException | ExecutionException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // args: [size] [seed]
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 42L;
+        int numThreads = Runtime.getRuntime().availableProcessors();
+
+        long startTime = System.nanoTime();
+        int[] reference = new Random().ints(size, 1, 100_000).toArray();
+        long randomMillis = (System.nanoTime() - startTime) / 1_000_000;
+
+        int[] single = new int[size];
+        ExecutorService one = Executors.newSingleThreadExecutor();
+        fill(one, single, 1, seed, 1, 100_000);
+        one.shutdown();
+
+        int[] array = new int[size];
+        try (LargestValueReducer reducer = new LargestValueReducer(numThreads)) {
+            // Each reducer worker fills the chunk it will reduce afterwards
+            startTime = System.nanoTime();
+            reducer.fill(array, seed, 1, 100_000);
+            long fillMillis = (System.nanoTime() - startTime) / 1_000_000;
+
+            int[] result = reducer.reduce(array);
+
+            System.out.println("Same as single-threaded fill: " + Arrays.equals(single, array));
+            System.out.println("Largest Number in the Array: " + result[0]);
+            System.out.println("Total Even Count: " + result[1]);
+            System.out.println("Random().ints: " + randomMillis + " millisecs (" + reference.length + " elements)");
+            System.out.println("Parallel fill: " + fillMillis + " millisecs on " + numThreads + " threads");
+        }
+    }
+}
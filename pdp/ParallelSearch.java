@@ -0,0 +1,248 @@
+package Pdp2;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.IntPredicate;
+import java.util.*;
+
+// Short-circuiting searches and deadline-bound reductions over ArrayProcessor-style chunks.
+// Workers scan their chunk in blocks and check a shared flag and the job deadline between
+// blocks, so they stop as soon as another worker has the answer or time is up. The caller
+// then gets a best-effort result marked incomplete rather than waiting on a slow chunk.
+public class ParallelSearch {
+
+    static final int BLOCK_SIZE = 4096;
+
+    // Returned by a chunk: where it stopped, whether the deadline cut it short,
+    // and for reductions the max and even count of what it scanned
+    static class ChunkScan {
+        final int position;
+        final boolean timedOut;
+        final int max;
+        final long evenCount;
+
+        ChunkScan(int position, boolean timedOut) {
+            this(position, timedOut, Integer.MIN_VALUE, 0);
+        }
+
+        ChunkScan(int position, boolean timedOut, int max, long evenCount) {
+            this.position = position;
+            this.timedOut = timedOut;
+            this.max = max;
+            this.evenCount = evenCount;
+        }
+    }
+
+    static class SearchResult {
+        final int index;        // -1 when nothing was found
+        final boolean complete; // false when the deadline hit before the answer was certain
+
+        SearchResult(int index, boolean complete) {
+            this.index = index;
+            this.complete = complete;
+        }
+
+        @Override
+        public String toString() {
+            return "index " + index + (complete ? "" : " (incomplete)");
+        }
+    }
+
+    static class PartialReduction {
+        final int max;
+        final long evenCount;
+        final long scanned;
+        final long total;
+
+        PartialReduction(int max, long evenCount, long scanned, long total) {
+            this.max = max;
+            this.evenCount = evenCount;
+            this.scanned = scanned;
+            this.total = total;
+        }
+
+        boolean isComplete() {
+            return scanned == total;
+        }
+    }
+
+    // Any index whose value matches; every worker stops once one is found
+    static SearchResult findAny(ExecutorService executor, int[] array, IntPredicate predicate,
+                                int numChunks, long timeout, TimeUnit unit) {
+        AtomicInteger found = new AtomicInteger(-1);
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+        List<Future<ChunkScan>> futures = submit(executor, array.length, numChunks, (start, end) -> {
+            for (int blockStart = start; blockStart < end; blockStart += BLOCK_SIZE) {
+                if (found.get() >= 0) {
+                    return new ChunkScan(blockStart, false);
+                }
+                if (System.nanoTime() - deadline > 0) {
+                    return new ChunkScan(blockStart, true);
+                }
+                int blockEnd = Math.min(end, blockStart + BLOCK_SIZE);
+                for (int i = blockStart; i < blockEnd; i++) {
+                    if (predicate.test(array[i])) {
+                        found.compareAndSet(-1, i);
+                        return new ChunkScan(i, false);
+                    }
+                }
+            }
+            return new ChunkScan(end, false);
+        });
+
+        boolean timedOut = false;
+        for (ChunkScan scan : await(futures, deadline)) {
+            timedOut |= scan == null || scan.timedOut;
+        }
+        int index = found.get();
+        // A hit is an answer even if other chunks ran out of time
+        return new SearchResult(index, index >= 0 || !timedOut);
+    }
+
+    // The lowest matching index. A worker stops once a match has been found before its
+    // current block, since nothing it could find would be lower.
+    static SearchResult findFirst(ExecutorService executor, int[] array, IntPredicate predicate,
+                                  int numChunks, long timeout, TimeUnit unit) {
+        AtomicInteger found = new AtomicInteger(Integer.MAX_VALUE);
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+        List<Future<ChunkScan>> futures = submit(executor, array.length, numChunks, (start, end) -> {
+            for (int blockStart = start; blockStart < end; blockStart += BLOCK_SIZE) {
+                if (found.get() < blockStart) {
+                    return new ChunkScan(end, false);
+                }
+                if (System.nanoTime() - deadline > 0) {
+                    return new ChunkScan(blockStart, true);
+                }
+                int blockEnd = Math.min(end, blockStart + BLOCK_SIZE);
+                for (int i = blockStart; i < blockEnd; i++) {
+                    if (predicate.test(array[i])) {
+                        found.accumulateAndGet(i, Math::min);
+                        return new ChunkScan(end, false);
+                    }
+                }
+            }
+            return new ChunkScan(end, false);
+        });
+
+        ChunkScan[] scans = await(futures, deadline);
+        int index = found.get();
+        // Certain only if every chunk that starts before the hit scanned up to it
+        boolean complete = true;
+        int chunkSize = array.length / numChunks;
+        for (int i = 0; i < scans.length; i++) {
+            int start = i * chunkSize;
+            if (start < index && (scans[i] == null || (scans[i].timedOut && scans[i].position < index))) {
+                complete = false;
+            }
+        }
+        return new SearchResult(index == Integer.MAX_VALUE ? -1 : index, complete);
+    }
+
+    // Max and even count of whatever could be scanned before the deadline
+    static PartialReduction reduce(ExecutorService executor, int[] array, int numChunks,
+                                   long timeout, TimeUnit unit) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+        List<Future<ChunkScan>> futures = submit(executor, array.length, numChunks, (start, end) -> {
+            int max = Integer.MIN_VALUE;
+            long evenCount = 0;
+            int blockStart = start;
+            boolean timedOut = false;
+            for (; blockStart < end; blockStart += BLOCK_SIZE) {
+                if (System.nanoTime() - deadline > 0) {
+                    timedOut = true;
+                    break;
+                }
+                int blockEnd = Math.min(end, blockStart + BLOCK_SIZE);
+                for (int i = blockStart; i < blockEnd; i++) {
+                    if (array[i] > max) {
+                        max = array[i];
+                    }
+                    if (array[i] % 2 == 0) {
+                        evenCount++;
+                    }
+                }
+            }
+            return new ChunkScan(Math.min(blockStart, end), timedOut, max, evenCount);
+        });
+
+        int globalMax = Integer.MIN_VALUE;
+        long totalEvenCount = 0;
+        long scanned = 0;
+        ChunkScan[] scans = await(futures, deadline);
+        int chunkSize = array.length / numChunks;
+        for (int i = 0; i < scans.length; i++) {
+            if (scans[i] != null) {
+                globalMax = Math.max(globalMax, scans[i].max);
+                totalEvenCount += scans[i].evenCount;
+                scanned += scans[i].position - i * chunkSize;
+            }
+        }
+        return new PartialReduction(globalMax, totalEvenCount, scanned, array.length);
+    }
+
+    interface ChunkTask {
+        ChunkScan scan(int start, int end);
+    }
+
+    static List<Future<ChunkScan>> submit(ExecutorService executor, int size, int numChunks, ChunkTask task) {
+        List<Future<ChunkScan>> futures = new ArrayList<>();
+        int chunkSize = size / numChunks;
+        for (int i = 0; i < numChunks; i++) {
+            int start = i * chunkSize;
+            int end = (i == numChunks - 1) ? size : start + chunkSize;
+            futures.add(executor.submit(() -> task.scan(start, end)));
+        }
+        return futures;
+    }
+
+    // Waits for each chunk until the deadline; chunks still queued after it are cancelled
+    // and come back as null. Running chunks see the deadline themselves within one block.
+    static ChunkScan[] await(List<Future<ChunkScan>> futures, long deadline) {
+        ChunkScan[] scans = new ChunkScan[futures.size()];
+        for (int i = 0; i < scans.length; i++) {
+            Future<ChunkScan> future = futures.get(i);
+            try {
+                long remaining = deadline - System.nanoTime();
+                scans[i] = future.get(Math.max(remaining, 0) + TimeUnit.MILLISECONDS.toNanos(10), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                future.cancel(true);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.cancel(true);
+            } catch (ExecutionException e) {
+                e.printStackTrace();
+            }
+        }
+        return scans;
+    }
+
+    // args: [size] [search timeoutMillis] [reduction timeoutMillis]
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        long timeoutMillis = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+        long reduceMillis = args.length > 2 ? Long.parseLong(args[2]) : 20;
+        int[] array = new Random().ints(size, 1, 100_000).toArray();
+        int numThreads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+
+        long startTime = System.nanoTime();
+        SearchResult any = findAny(executor, array, v -> v > 99_990, numThreads, timeoutMillis, TimeUnit.MILLISECONDS);
+        long anyNanos = System.nanoTime() - startTime;
+
+        startTime = System.nanoTime();
+        SearchResult first = findFirst(executor, array, v -> v == 12_345, numThreads, timeoutMillis, TimeUnit.MILLISECONDS);
+        long firstNanos = System.nanoTime() - startTime;
+
+        startTime = System.nanoTime();
+        PartialReduction partial = reduce(executor, array, numThreads * 4, reduceMillis, TimeUnit.MILLISECONDS);
+        long reduceNanos = System.nanoTime() - startTime;
+        executor.shutdown();
+
+        System.out.printf("Any element above 99990: %s in %.3f millisecs%n", any, anyNanos / 1e6);
+        System.out.printf("First index of 12345: %s in %.3f millisecs%n", first, firstNanos / 1e6);
+        System.out.printf("%d ms reduction: max %d, even count %d over %d of %d elements in %.3f millisecs%n",
+            reduceMillis, partial.max, partial.evenCount, partial.scanned, partial.total, reduceNanos / 1e6);
+    }
+}
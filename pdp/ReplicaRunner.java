@@ -0,0 +1,253 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Monte Carlo capacity planning on top of DiscreteEventSimulation.
+// Every combination of the swept parameters is a scenario, and every scenario is run as
+// a number of independent replicas with their own seeds. A replica is one
+// DiscreteEventSimulation instance with no shared state, so the replicas of all
+// scenarios go to one fixed pool and keep every core busy. For each scenario the report
+// gives the mean of every figure over its replicas with a 95% confidence interval.
+//
+// Lists separate sweep values with commas and per-room values with slashes, e.g.
+//   --capacities 60/60/20/30,60/60/60 --weights 4/3/1/2,1/1/1 --students 150,200
+// weights must have one entry per room of every capacity set. The campus comes from
+// --scenario <file> (-Dclassroom.scenario or the default campus when left out): its rooms,
+// preferences, lecturers and population are the defaults of the sweep. A capacity set with
+// as many rooms as the scenario takes its names and, without --weights, its preferences;
+// any other campus gets rooms R0, R1, ... with equal weights.
+// --patience is how many milliseconds students and visitors queue before they give up;
+// those are reported as rejections, apart from the entries that were only delayed.
+// Left at -1 everybody waits until they get in.
+//
+// args: [--scenario file] [--students 150] [--visitors 15] [--max-visitors 5] [--capacities 60/60/20/30]
+//       [--weights 4/3/1/2] [--patience -1] [--hours 1] [--replicas 32] [--seed 42] [--threads N]
+public class ReplicaRunner {
+
+    // One point of the parameter grid
+    static class Scenario {
+        final CampusScenario campus;
+        final int[] capacities;
+        final double[] weights;
+        final int students, visitors, maxVisitors;
+        final long patienceMillis;
+        final List<DiscreteEventSimulation.Summary> replicas = new ArrayList<>();
+
+        Scenario(CampusScenario campus, int[] capacities, double[] weights, int students, int visitors,
+                 int maxVisitors, long patienceMillis) {
+            this.campus = campus;
+            this.capacities = capacities;
+            this.weights = weights;
+            this.students = students;
+            this.visitors = visitors;
+            this.maxVisitors = maxVisitors;
+            this.patienceMillis = patienceMillis;
+        }
+
+        DiscreteEventSimulation.Summary run(long durationMillis, long seed) {
+            String[] names = new String[capacities.length];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = capacities.length == campus.roomNames.length ? campus.roomNames[i] : "R" + i;
+            }
+            DiscreteEventSimulation simulation = new DiscreteEventSimulation(names, capacities, weights,
+                campus.lecturers, maxVisitors, patienceMillis, students, visitors, seed);
+            simulation.run(durationMillis);
+            return simulation.summarize(durationMillis);
+        }
+    }
+
+    interface Figure {
+        double of(DiscreteEventSimulation.Summary summary);
+    }
+
+    static final String[] FIGURE_NAMES = {"Occupancy %", "Peak %", "InSes %", "Stud delayed %",
+        "Visit delayed %", "Stud rejected %", "Visit rejected %",
+        "Stud wait ms", "Visit wait ms", "Lect wait ms", "Entries/h"};
+    static final Figure[] FIGURES = {
+        s -> 100 * s.studentOccupancy,
+        s -> 100 * s.peakOccupancy,
+        s -> 100 * s.sessionShare,
+        s -> 100 * s.studentsDelayedShare,
+        s -> 100 * s.visitorsDelayedShare,
+        s -> 100 * s.studentsRejectedShare,
+        s -> 100 * s.visitorsRejectedShare,
+        s -> s.studentWaitMillis,
+        s -> s.visitorWaitMillis,
+        s -> s.lecturerWaitMillis,
+        s -> s.entriesPerHour,
+    };
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Map<String, String> options = new HashMap<>();
+        options.put("scenario", "");
+        options.put("students", "");
+        options.put("visitors", "");
+        options.put("max-visitors", String.valueOf(DiscreteEventSimulation.MAX_VISITORS));
+        options.put("capacities", "");
+        options.put("weights", "");
+        options.put("patience", "-1");
+        options.put("hours", "1");
+        options.put("replicas", "32");
+        options.put("seed", "42");
+        options.put("threads", String.valueOf(Runtime.getRuntime().availableProcessors()));
+        for (int i = 0; i < args.length; i += 2) {
+            if (!args[i].startsWith("--") || !options.containsKey(args[i].substring(2))) {
+                throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Option " + args[i] + " needs a value");
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+
+        CampusScenario campus = options.get("scenario").isEmpty()
+            ? CampusScenario.fromSystemProperties() : CampusScenario.load(Paths.get(options.get("scenario")));
+        int[] studentCounts = parseInts(orElse(options.get("students"), String.valueOf(campus.students)));
+        int[] visitorCounts = parseInts(orElse(options.get("visitors"), String.valueOf(campus.visitors)));
+        int[] visitorLimits = parseInts(options.get("max-visitors"));
+        int[] patiences = parseInts(options.get("patience"));
+        String[] capacitySets = orElse(options.get("capacities"), join(campus.capacities)).split(",");
+        String[] weightSets = options.get("weights").isEmpty() ? new String[] {""} : options.get("weights").split(",");
+        long duration = (long) (Double.parseDouble(options.get("hours")) * 3_600_000);
+        int replicas = Integer.parseInt(options.get("replicas"));
+        long seed = Long.parseLong(options.get("seed"));
+        int threads = Integer.parseInt(options.get("threads"));
+        if (replicas < 2) {
+            throw new IllegalArgumentException("Need at least 2 replicas for a confidence interval");
+        }
+
+        List<Scenario> scenarios = new ArrayList<>();
+        for (String capacitySet : capacitySets) {
+            int[] capacities = Arrays.stream(capacitySet.split("/")).mapToInt(s -> Integer.parseInt(s.trim())).toArray();
+            for (String weightSet : weightSets) {
+                double[] weights = weightSet.isEmpty()
+                    ? defaultWeights(campus, capacities)
+                    : Arrays.stream(weightSet.split("/")).mapToDouble(s -> Double.parseDouble(s.trim())).toArray();
+                if (weights.length != capacities.length) {
+                    throw new IllegalArgumentException("Weights " + weightSet + " do not match rooms " + capacitySet);
+                }
+                for (int students : studentCounts) {
+                    for (int visitors : visitorCounts) {
+                        for (int maxVisitors : visitorLimits) {
+                            for (int patience : patiences) {
+                                scenarios.add(new Scenario(campus, capacities, weights, students, visitors, maxVisitors, patience));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        // All replicas of all scenarios are independent tasks
+        long startTime = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<List<Future<DiscreteEventSimulation.Summary>>> futures = new ArrayList<>();
+        long replicaIndex = 0;
+        for (Scenario scenario : scenarios) {
+            List<Future<DiscreteEventSimulation.Summary>> results = new ArrayList<>();
+            for (int r = 0; r < replicas; r++) {
+                long replicaSeed = replicaSeed(seed, replicaIndex++);
+                results.add(executor.submit(() -> scenario.run(duration, replicaSeed)));
+            }
+            futures.add(results);
+        }
+        try {
+            for (int i = 0; i < scenarios.size(); i++) {
+                for (Future<DiscreteEventSimulation.Summary> future : futures.get(i)) {
+                    scenarios.get(i).replicas.add(future.get());
+                }
+            }
+        } catch (ExecutionException e) {
+            // One failed replica fails the run, so the rest are not worth waiting for
+            executor.shutdownNow();
+            e.printStackTrace();
+            return;
+        } finally {
+            executor.shutdown();
+        }
+        long wallMillis = (System.nanoTime() - startTime) / 1_000_000;
+
+        System.out.printf("%-16s %-16s %5s %5s %5s %8s", "Capacities", "Weights", "Stud", "Visit", "MaxV", "Pat ms");
+        for (String name : FIGURE_NAMES) {
+            System.out.printf(" %20s", name);
+        }
+        System.out.println();
+        for (Scenario scenario : scenarios) {
+            System.out.printf("%-16s %-16s %5d %5d %5d %8d", join(scenario.capacities), join(scenario.weights),
+                scenario.students, scenario.visitors, scenario.maxVisitors, scenario.patienceMillis);
+            for (Figure figure : FIGURES) {
+                double[] values = scenario.replicas.stream().mapToDouble(figure::of).toArray();
+                System.out.printf(" %10.2f +- %6.2f", mean(values), confidence95(values));
+            }
+            System.out.println();
+        }
+        System.out.printf("%d scenarios x %d replicas of %.2f hours in %d millisecs on %d threads%n",
+            scenarios.size(), replicas, duration / 3_600_000.0, wallMillis, threads);
+    }
+
+    // The scenario preferences when the rooms are the scenario's, equal weights otherwise
+    static double[] defaultWeights(CampusScenario campus, int[] capacities) {
+        if (capacities.length == campus.weights.length) {
+            return campus.weights.clone();
+        }
+        double[] weights = new double[capacities.length];
+        Arrays.fill(weights, 1.0);
+        return weights;
+    }
+
+    // SplitMix64 of the replica number, so neighbouring replicas get unrelated seeds
+    static long replicaSeed(long seed, long replica) {
+        long z = seed + (replica + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    static double mean(double[] values) {
+        double sum = 0;
+        for (double v : values) {
+            sum += v;
+        }
+        return sum / values.length;
+    }
+
+    // Half-width of the 95% interval of the mean, Student t for few replicas
+    static double confidence95(double[] values) {
+        double mean = mean(values);
+        double squares = 0;
+        for (double v : values) {
+            squares += (v - mean) * (v - mean);
+        }
+        int df = values.length - 1;
+        double[] t = {12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+            2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086,
+            2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042};
+        double quantile = df <= t.length ? t[df - 1] : 1.96;
+        return quantile * Math.sqrt(squares / df) / Math.sqrt(values.length);
+    }
+
+    static String orElse(String option, String fallback) {
+        return option.isEmpty() ? fallback : option;
+    }
+
+    static int[] parseInts(String list) {
+        return Arrays.stream(list.split(",")).mapToInt(s -> Integer.parseInt(s.trim().replace("_", ""))).toArray();
+    }
+
+    static String join(int[] values) {
+        StringJoiner joiner = new StringJoiner("/");
+        for (int v : values) {
+            joiner.add(String.valueOf(v));
+        }
+        return joiner.toString();
+    }
+
+    static String join(double[] values) {
+        StringJoiner joiner = new StringJoiner("/");
+        for (double v : values) {
+            joiner.add(v == Math.rint(v) ? String.valueOf((long) v) : String.valueOf(v));
+        }
+        return joiner.toString();
+    }
+}
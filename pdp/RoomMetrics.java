@@ -0,0 +1,332 @@
+import java.io.*;
+import java.lang.invoke.VarHandle;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+import javax.management.*;
+
+// Admission metrics for one room, shared by the Classroom classes of the simulations.
+// Per role it keeps a wait-time histogram with power-of-two buckets, plus admission and
+// rejection counts; it also counts how often the room lock was already held, and
+// integrates the occupancy over time for utilization. Counters are LongAdders and
+// AtomicLongArrays, so recording is a few uncontended adds next to work the room does
+// anyway. Each simulation registers one MXBean for its whole campus, which builds a
+// room's values only when a client asks for them, so start-up does not pay a platform
+// registration per room. The values can also be appended to a CSV file at a fixed
+// interval, which gives utilization over time for every room.
+public class RoomMetrics {
+
+    public static final int STUDENT = 0, VISITOR = 1, LECTURER = 2;
+    static final String[] ROLE_NAMES = {"Student", "Visitor", "Lecturer"};
+    static final int BUCKETS = 64; // bucket b counts waits below 2^b nanos
+
+    // Read-only view of one room, served through CampusView
+    public interface View {
+        String getName();
+        int getCapacity();
+        int getOccupancy();
+        double getUtilization();
+        long getLockAcquisitions();
+        long getLockContended();
+        long getStudentAdmissions();
+        long getStudentRejections();
+        double getStudentWaitMeanMillis();
+        double getStudentWaitP99Millis();
+        double getStudentWaitMaxMillis();
+        long getVisitorAdmissions();
+        long getVisitorRejections();
+        double getVisitorWaitMeanMillis();
+        double getVisitorWaitP99Millis();
+        double getVisitorWaitMaxMillis();
+        long getLecturerAdmissions();
+        long getLecturerRejections();
+        double getLecturerWaitMeanMillis();
+        double getLecturerWaitP99Millis();
+        double getLecturerWaitMaxMillis();
+    }
+
+    // The campus MXBean; rooms are looked up by name or read a page at a time
+    public interface CampusView {
+        int getRoomCount();
+        double getUtilization();
+        long getLockContended();
+        View room(String name);
+        View[] rooms(int from, int count);
+    }
+
+    final String name;
+    final int capacity;
+
+    private final AtomicLongArray histograms = new AtomicLongArray(3 * BUCKETS);
+    private final LongAdder[] admissions = {new LongAdder(), new LongAdder(), new LongAdder()};
+    private final LongAdder[] rejections = {new LongAdder(), new LongAdder(), new LongAdder()};
+    private final LongAdder[] waitNanos = {new LongAdder(), new LongAdder(), new LongAdder()};
+    private final AtomicLongArray maxWaitNanos = new AtomicLongArray(3);
+    private final LongAdder lockAcquisitions = new LongAdder();
+    private final LongAdder lockContended = new LongAdder();
+
+    // Occupancy integral, updated by the room while it holds its lock, so there is one
+    // writer at a time. Readers use the seqlock version as in CampusSnapshot: odd while
+    // the fields are being changed.
+    private final long startNanos = System.nanoTime();
+    private long lastChangeNanos = startNanos;
+    private int occupants = 0;
+    private long occupantNanos = 0;
+    private volatile long version = 0;
+
+    public RoomMetrics(String name, int capacity) {
+        this.name = name;
+        this.capacity = capacity;
+    }
+
+    // Takes the lock, counting it as contended when it was not free at once
+    public void lock(Lock lock) {
+        lockAcquisitions.increment();
+        if (!lock.tryLock()) {
+            lockContended.increment();
+            lock.lock();
+        }
+    }
+
+    public void admitted(int role, long waitedNanos) {
+        admissions[role].increment();
+        waitNanos[role].add(waitedNanos);
+        int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(waitedNanos));
+        histograms.incrementAndGet(role * BUCKETS + bucket);
+        long max = maxWaitNanos.get(role);
+        while (waitedNanos > max && !maxWaitNanos.compareAndSet(role, max, waitedNanos)) {
+            max = maxWaitNanos.get(role);
+        }
+    }
+
+    // A tryAcquire-style entry that was turned away
+    public void rejected(int role) {
+        rejections[role].increment();
+    }
+
+    // Must be called with the room lock held
+    public void occupancyChanged(int newOccupants) {
+        long now = System.nanoTime();
+        version++;
+        VarHandle.storeStoreFence();
+        occupantNanos += occupants * (now - lastChangeNanos);
+        lastChangeNanos = now;
+        occupants = newOccupants;
+        version++;
+    }
+
+    // Occupant-nanos since start and the time they were taken at; never blocks the room
+    long[] occupancyIntegral() {
+        while (true) {
+            long before = version;
+            if ((before & 1) == 0) {
+                long integral = occupantNanos;
+                long last = lastChangeNanos;
+                int count = occupants;
+                VarHandle.acquireFence();
+                if (version == before) {
+                    long now = Math.max(System.nanoTime(), last);
+                    return new long[] {integral + count * (now - last), now};
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    public long admissions(int role) {
+        return admissions[role].sum();
+    }
+
+    public long rejections(int role) {
+        return rejections[role].sum();
+    }
+
+    public double waitMeanMillis(int role) {
+        long count = admissions[role].sum();
+        return count == 0 ? 0 : waitNanos[role].sum() / 1e6 / count;
+    }
+
+    public double waitMaxMillis(int role) {
+        return maxWaitNanos.get(role) / 1e6;
+    }
+
+    // Upper bound of the bucket holding the given quantile, so within a factor of two
+    public double waitPercentileMillis(int role, double quantile) {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            counts[b] = histograms.get(role * BUCKETS + b);
+            total += counts[b];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += counts[b];
+            if (seen >= rank) {
+                return b == 0 ? 0 : Math.min(1L << b, maxWaitNanos.get(role)) / 1e6;
+            }
+        }
+        return waitMaxMillis(role);
+    }
+
+    View view() {
+        return new View() {
+            public String getName() { return name; }
+            public int getCapacity() { return capacity; }
+            public int getOccupancy() { return currentOccupancy(); }
+            public double getUtilization() { return utilization(); }
+            public long getLockAcquisitions() { return lockAcquisitions.sum(); }
+            public long getLockContended() { return lockContended.sum(); }
+            public long getStudentAdmissions() { return admissions(STUDENT); }
+            public long getStudentRejections() { return rejections(STUDENT); }
+            public double getStudentWaitMeanMillis() { return waitMeanMillis(STUDENT); }
+            public double getStudentWaitP99Millis() { return waitPercentileMillis(STUDENT, 0.99); }
+            public double getStudentWaitMaxMillis() { return waitMaxMillis(STUDENT); }
+            public long getVisitorAdmissions() { return admissions(VISITOR); }
+            public long getVisitorRejections() { return rejections(VISITOR); }
+            public double getVisitorWaitMeanMillis() { return waitMeanMillis(VISITOR); }
+            public double getVisitorWaitP99Millis() { return waitPercentileMillis(VISITOR, 0.99); }
+            public double getVisitorWaitMaxMillis() { return waitMaxMillis(VISITOR); }
+            public long getLecturerAdmissions() { return admissions(LECTURER); }
+            public long getLecturerRejections() { return rejections(LECTURER); }
+            public double getLecturerWaitMeanMillis() { return waitMeanMillis(LECTURER); }
+            public double getLecturerWaitP99Millis() { return waitPercentileMillis(LECTURER, 0.99); }
+            public double getLecturerWaitMaxMillis() { return waitMaxMillis(LECTURER); }
+        };
+    }
+
+    // Registers all rooms as one campus:type=Campus,simulation=<simulation>
+    public static void register(String simulation, List<RoomMetrics> rooms) {
+        CampusView campus = new CampusView() {
+            public int getRoomCount() { return rooms.size(); }
+
+            // Share of all places in use since start, weighted by capacity
+            public double getUtilization() {
+                double used = 0;
+                long places = 0;
+                for (RoomMetrics room : rooms) {
+                    used += room.utilization() * room.capacity;
+                    places += room.capacity;
+                }
+                return places == 0 ? 0 : used / places;
+            }
+
+            public long getLockContended() {
+                long sum = 0;
+                for (RoomMetrics room : rooms) {
+                    sum += room.lockContended.sum();
+                }
+                return sum;
+            }
+
+            // Null for an unknown name; a scan, as this is only for someone looking at a room
+            public View room(String name) {
+                for (RoomMetrics room : rooms) {
+                    if (room.name.equals(name)) {
+                        return room.view();
+                    }
+                }
+                return null;
+            }
+
+            public View[] rooms(int from, int count) {
+                int start = Math.max(0, Math.min(from, rooms.size()));
+                int end = (int) Math.min(rooms.size(), (long) start + Math.max(0, count));
+                View[] page = new View[end - start];
+                for (int i = start; i < end; i++) {
+                    page[i - start] = rooms.get(i).view();
+                }
+                return page;
+            }
+        };
+        try {
+            ObjectName objectName = new ObjectName("campus:type=Campus,simulation=" + simulation);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(
+                new StandardMBean(campus, CampusView.class, true), objectName);
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+    }
+
+    int currentOccupancy() {
+        while (true) {
+            long before = version;
+            if ((before & 1) == 0) {
+                int count = occupants;
+                VarHandle.acquireFence();
+                if (version == before) {
+                    return count;
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    // Average share of the capacity in use since the room was created
+    public double utilization() {
+        long[] integral = occupancyIntegral();
+        long elapsed = integral[1] - startNanos;
+        return elapsed == 0 ? 0 : integral[0] / (double) elapsed / capacity;
+    }
+
+    // Appends one CSV row per room every intervalMillis, with the utilization of that interval.
+    // Configured with -Dclassroom.metrics.file and -Dclassroom.metrics.interval (seconds).
+    public static void startDump(List<RoomMetrics> rooms) {
+        String file = System.getProperty("classroom.metrics.file");
+        if (file == null) {
+            return;
+        }
+        long intervalMillis = Long.getLong("classroom.metrics.interval", 10) * 1000;
+        Thread dumper = new Thread(() -> {
+            long[][] previous = new long[rooms.size()][];
+            for (int i = 0; i < previous.length; i++) {
+                previous[i] = rooms.get(i).occupancyIntegral();
+            }
+            try (Writer out = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(file, true), StandardCharsets.UTF_8))) {
+                out.write("time,room,capacity,occupancy,interval_utilization,utilization,"
+                    + "lock_acquisitions,lock_contended");
+                for (String role : ROLE_NAMES) {
+                    String r = role.toLowerCase();
+                    out.write("," + r + "_admissions," + r + "_rejections," + r + "_wait_mean_ms,"
+                        + r + "_wait_p50_ms," + r + "_wait_p99_ms," + r + "_wait_max_ms");
+                }
+                out.write('\n');
+                out.flush();
+                while (true) {
+                    Thread.sleep(intervalMillis);
+                    long time = System.currentTimeMillis();
+                    for (int i = 0; i < rooms.size(); i++) {
+                        RoomMetrics room = rooms.get(i);
+                        long[] integral = room.occupancyIntegral();
+                        double interval = (integral[0] - previous[i][0])
+                            / (double) Math.max(1, integral[1] - previous[i][1]) / room.capacity;
+                        previous[i] = integral;
+                        out.write(String.format(Locale.ROOT, "%d,%s,%d,%d,%.4f,%.4f,%d,%d", time, room.name,
+                            room.capacity, room.currentOccupancy(), interval, room.utilization(),
+                            room.lockAcquisitions.sum(), room.lockContended.sum()));
+                        for (int role = STUDENT; role <= LECTURER; role++) {
+                            out.write(String.format(Locale.ROOT, ",%d,%d,%.3f,%.3f,%.3f,%.3f",
+                                room.admissions(role), room.rejections(role), room.waitMeanMillis(role),
+                                room.waitPercentileMillis(role, 0.5), room.waitPercentileMillis(role, 0.99),
+                                room.waitMaxMillis(role)));
+                        }
+                        out.write('\n');
+                    }
+                    out.flush();
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "room-metrics");
+        dumper.setDaemon(true);
+        dumper.start();
+    }
+}
@@ -0,0 +1,74 @@
+package Pdp2;
+import java.util.*;
+
+// An int array indexed by long, stored as fixed-size int[] segments so
+// it can hold more than the 2^31 elements a single Java array allows
+public class SegmentedIntArray {
+
+    static final int DEFAULT_SEGMENT_SHIFT = 26; // 64M ints (256 MB) per segment
+
+    private final int[][] segments;
+    private final long length;
+    private final int segmentShift;
+    private final int segmentMask;
+
+    public SegmentedIntArray(long length) {
+        this(length, DEFAULT_SEGMENT_SHIFT);
+    }
+
+    public SegmentedIntArray(long length, int segmentShift) {
+        if (length < 0) {
+            throw new IllegalArgumentException("length must not be negative: " + length);
+        }
+        if (segmentShift < 1 || segmentShift > 30) {
+            throw new IllegalArgumentException("segmentShift must be between 1 and 30: " + segmentShift);
+        }
+        this.length = length;
+        this.segmentShift = segmentShift;
+        this.segmentMask = (1 << segmentShift) - 1;
+
+        long segmentSize = 1L << segmentShift;
+        long count = (length + segmentSize - 1) >>> segmentShift;
+        if (count > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many segments for length " + length);
+        }
+        this.segments = new int[(int) count][];
+        for (int i = 0; i < segments.length; i++) {
+            long remaining = length - ((long) i << segmentShift);
+            segments[i] = new int[(int) Math.min(segmentSize, remaining)];
+        }
+    }
+
+    public long length() {
+        return length;
+    }
+
+    public int get(long index) {
+        return segments[(int) (index >>> segmentShift)][(int) (index & segmentMask)];
+    }
+
+    public void set(long index, int value) {
+        segments[(int) (index >>> segmentShift)][(int) (index & segmentMask)] = value;
+    }
+
+    public int segmentCount() {
+        return segments.length;
+    }
+
+    // The backing array of one segment, for loops that scan a whole segment at a time
+    public int[] segment(int segmentIndex) {
+        return segments[segmentIndex];
+    }
+
+    public int segmentShift() {
+        return segmentShift;
+    }
+
+    public void fill(Random random, int origin, int bound) {
+        for (int[] segment : segments) {
+            for (int i = 0; i < segment.length; i++) {
+                segment[i] = random.nextInt(bound - origin) + origin;
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package Pdp2;
+import java.util.concurrent.*;
+import java.util.*;
+
+// LargestValue over a SegmentedIntArray, with long offsets and a long even count
+public class SegmentedLargestValue {
+
+    static class SegmentProcessor implements Callable<long[]> {
+
+        private final long start, end;
+        private final SegmentedIntArray array;
+
+        public SegmentProcessor(SegmentedIntArray array, long start, long end) {
+            this.array = array;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public long[] call() {
+            int max = Integer.MIN_VALUE;
+            long evenCount = 0;
+
+            int shift = array.segmentShift();
+            long position = start;
+            // A chunk can span segment boundaries, scan each piece as a plain int[] loop
+            while (position < end) {
+                int segmentIndex = (int) (position >>> shift);
+                long segmentStart = (long) segmentIndex << shift;
+                int[] segment = array.segment(segmentIndex);
+                int from = (int) (position - segmentStart);
+                int to = (int) Math.min(segment.length, end - segmentStart);
+
+                for (int i = from; i < to; i++) {
+                    if (segment[i] > max) {
+                        max = segment[i];
+                    }
+                    if (segment[i] % 2 == 0) {
+                        evenCount++;
+                    }
+                }
+                position = segmentStart + to;
+            }
+            return new long[]{max, evenCount};
+        }
+    }
+
+    static long[] reduce(ExecutorService executor, SegmentedIntArray array, int numChunks) {
+        List<Future<long[]>> futures = new ArrayList<>();
+        long size = array.length();
+        long chunkSize = size / numChunks;
+
+        for (int i = 0; i < numChunks; i++) {
+            long start = i * chunkSize;
+            long end = (i == numChunks - 1) ? size : start + chunkSize;
+            futures.add(executor.submit(new SegmentProcessor(array, start, end)));
+        }
+
+        long globalMax = Integer.MIN_VALUE;
+        long totalEvenCount = 0;
+
+        for (Future<long[]> future : futures) {
+            try {
+                long[] result = future.get();
+                if (result[0] > globalMax) {
+                    globalMax = result[0];
+                }
+                totalEvenCount += result[1];
+            } catch (InterruptedException | ExecutionException e) {
+                e.printStackTrace();
+            }
+        }
+        return new long[]{globalMax, totalEvenCount};
+    }
+
+    // args: [size] [segmentShift]
+    public static void main(String[] args) {
+        long size = args.length > 0 ? Long.parseLong(args[0]) : 3_000_000_000L;
+        int shift = args.length > 1 ? Integer.parseInt(args[1]) : SegmentedIntArray.DEFAULT_SEGMENT_SHIFT;
+
+        SegmentedIntArray array = new SegmentedIntArray(size, shift);
+        array.fill(new Random(), 1, 100_000);
+
+        int numThreads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+
+        long startTime = System.nanoTime();
+        // More chunks than threads so a slow chunk does not hold up the whole job
+        long[] result = reduce(executor, array, numThreads * 4);
+        long endTime = System.nanoTime();
+
+        executor.shutdown();
+
+        long durationMillis = (endTime - startTime) / 1_000_000;
+        double durationSecs = durationMillis / 1000.0;
+
+        System.out.println("Elements: " + size + " in " + array.segmentCount() + " segments");
+        System.out.println("Largest Number in the Array: " + result[0]);
+        System.out.println("Total Even Count: " + result[1]);
+        System.out.println(durationMillis + " millisecs (" + durationSecs + ")");
+    }
+}
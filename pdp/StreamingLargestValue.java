@@ -0,0 +1,297 @@
+package Pdp2;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.*;
+import java.util.*;
+
+// Running max and even count over an unbounded stream of ints.
+// Producers hand in batches from any thread; each element is folded into
+// a tumbling window, a sliding window over the last N elements and a sliding
+// window over the last T nanoseconds, so queries never re-scan old data.
+public class StreamingLargestValue {
+
+    // Every `size` elements the window closes and a new one starts
+    static class TumblingWindow {
+        final int size;
+        int count = 0;
+        int max = Integer.MIN_VALUE;
+        int evenCount = 0;
+
+        long completed = 0;
+        int lastMax = Integer.MIN_VALUE;
+        int lastEvenCount = 0;
+
+        TumblingWindow(int size) {
+            this.size = size;
+        }
+
+        void add(int value) {
+            if (value > max) {
+                max = value;
+            }
+            if (value % 2 == 0) {
+                evenCount++;
+            }
+            if (++count == size) {
+                lastMax = max;
+                lastEvenCount = evenCount;
+                completed++;
+                count = 0;
+                max = Integer.MIN_VALUE;
+                evenCount = 0;
+            }
+        }
+    }
+
+    // The last `size` elements. The max is the head of a monotonic deque of
+    // element indexes whose values only decrease, so add and max are O(1) amortized.
+    static class CountWindow {
+        final int size;
+        final int[] values;    // ring of the last `size` values
+        final long[] deque;    // ring of element indexes, values decreasing from head to tail
+        long head = 0, tail = 0;
+        long count = 0;
+        int evenCount = 0;
+
+        CountWindow(int size) {
+            this.size = size;
+            this.values = new int[size];
+            this.deque = new long[size];
+        }
+
+        void add(int value) {
+            long index = count;
+            int slot = (int) (index % size);
+            if (index >= size) {
+                // The element at index - size drops out of the window
+                if (values[slot] % 2 == 0) {
+                    evenCount--;
+                }
+                if (tail > head && deque[(int) (head % size)] == index - size) {
+                    head++;
+                }
+            }
+            values[slot] = value;
+            if (value % 2 == 0) {
+                evenCount++;
+            }
+            while (tail > head && values[(int) (deque[(int) ((tail - 1) % size)] % size)] <= value) {
+                tail--;
+            }
+            deque[(int) (tail % size)] = index;
+            tail++;
+            count++;
+        }
+
+        int max() {
+            return tail > head ? values[(int) (deque[(int) (head % size)] % size)] : Integer.MIN_VALUE;
+        }
+
+        int length() {
+            return (int) Math.min(count, size);
+        }
+    }
+
+    // The last `windowNanos`, kept as `buckets` time buckets. Closed buckets sit in a
+    // FIFO for the even count and in a monotonic deque for the max, so expiring a
+    // bucket and answering a query are O(1) amortized. Resolution is one bucket.
+    static class TimeWindow {
+        final long bucketNanos;
+        final int buckets;
+
+        long currentBucket = Long.MIN_VALUE;
+        int currentMax = Integer.MIN_VALUE;
+        int currentEvenCount = 0;
+
+        final long[] fifoBucket, dequeBucket;
+        final int[] fifoEvenCount, dequeMax;
+        long fifoHead = 0, fifoTail = 0, dequeHead = 0, dequeTail = 0;
+        long closedEvenCount = 0;
+
+        TimeWindow(long windowNanos, int buckets) {
+            this.buckets = buckets;
+            this.bucketNanos = Math.max(1, windowNanos / buckets);
+            this.fifoBucket = new long[buckets];
+            this.fifoEvenCount = new int[buckets];
+            this.dequeBucket = new long[buckets];
+            this.dequeMax = new int[buckets];
+        }
+
+        void advance(long now) {
+            long bucket = now / bucketNanos;
+            if (bucket == currentBucket) {
+                return;
+            }
+            long oldest = bucket - buckets; // buckets at or before this have expired
+            while (fifoTail > fifoHead && fifoBucket[(int) (fifoHead % buckets)] <= oldest) {
+                closedEvenCount -= fifoEvenCount[(int) (fifoHead % buckets)];
+                fifoHead++;
+            }
+            while (dequeTail > dequeHead && dequeBucket[(int) (dequeHead % buckets)] <= oldest) {
+                dequeHead++;
+            }
+            if (currentBucket > oldest && currentBucket != Long.MIN_VALUE) {
+                int slot = (int) (fifoTail++ % buckets);
+                fifoBucket[slot] = currentBucket;
+                fifoEvenCount[slot] = currentEvenCount;
+                closedEvenCount += currentEvenCount;
+
+                if (currentMax != Integer.MIN_VALUE) {
+                    while (dequeTail > dequeHead && dequeMax[(int) ((dequeTail - 1) % buckets)] <= currentMax) {
+                        dequeTail--;
+                    }
+                    slot = (int) (dequeTail++ % buckets);
+                    dequeBucket[slot] = currentBucket;
+                    dequeMax[slot] = currentMax;
+                }
+            }
+            currentBucket = bucket;
+            currentMax = Integer.MIN_VALUE;
+            currentEvenCount = 0;
+        }
+
+        void add(int value, long now) {
+            advance(now);
+            if (value > currentMax) {
+                currentMax = value;
+            }
+            if (value % 2 == 0) {
+                currentEvenCount++;
+            }
+        }
+
+        int max(long now) {
+            advance(now);
+            int closedMax = dequeTail > dequeHead ? dequeMax[(int) (dequeHead % buckets)] : Integer.MIN_VALUE;
+            return Math.max(closedMax, currentMax);
+        }
+
+        long evenCount(long now) {
+            advance(now);
+            return closedEvenCount + currentEvenCount;
+        }
+    }
+
+    private final Lock lock = new ReentrantLock();
+    private final TumblingWindow tumbling;
+    private final CountWindow sliding;
+    private final TimeWindow timed;
+
+    private long totalCount = 0;
+    private long totalEvenCount = 0;
+    private int totalMax = Integer.MIN_VALUE;
+
+    public StreamingLargestValue(int tumblingSize, int slidingSize, long windowNanos, int timeBuckets) {
+        if (tumblingSize < 1 || slidingSize < 1 || windowNanos < 1 || timeBuckets < 1) {
+            throw new IllegalArgumentException("Window sizes must be positive");
+        }
+        this.tumbling = new TumblingWindow(tumblingSize);
+        this.sliding = new CountWindow(slidingSize);
+        this.timed = new TimeWindow(windowNanos, timeBuckets);
+    }
+
+    // Called by producer threads; a batch is applied as one unit, in arrival order
+    public void accept(int[] batch, int from, int to) {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            for (int i = from; i < to; i++) {
+                int value = batch[i];
+                if (value > totalMax) {
+                    totalMax = value;
+                }
+                if (value % 2 == 0) {
+                    totalEvenCount++;
+                }
+                tumbling.add(value);
+                sliding.add(value);
+                timed.add(value, now);
+            }
+            totalCount += to - from;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void accept(int[] batch) {
+        accept(batch, 0, batch.length);
+    }
+
+    public String getStatus() {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            return String.format("%-10s %12d %12d %12d%n", "Total", totalCount, totalMax, totalEvenCount)
+                + String.format("%-10s %12d %12d %12d%n", "Tumbling", tumbling.completed, tumbling.lastMax, tumbling.lastEvenCount)
+                + String.format("%-10s %12d %12d %12d%n", "Last N", sliding.length(), sliding.max(), sliding.evenCount)
+                + String.format("%-10s %12s %12d %12d%n", "Last T", "-", timed.max(now), timed.evenCount(now));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getSlidingMax() {
+        lock.lock();
+        try {
+            return sliding.max();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getSlidingEvenCount() {
+        lock.lock();
+        try {
+            return sliding.evenCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getTimeWindowMax() {
+        lock.lock();
+        try {
+            return timed.max(System.nanoTime());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getTimeWindowEvenCount() {
+        lock.lock();
+        try {
+            return timed.evenCount(System.nanoTime());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // args: [producers] [seconds]
+    public static void main(String[] args) throws InterruptedException {
+        int producers = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        StreamingLargestValue stream = new StreamingLargestValue(
+            1_000_000, 100_000, TimeUnit.SECONDS.toNanos(1), 100);
+
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        for (int p = 0; p < producers; p++) {
+            executor.execute(() -> {
+                Random random = new Random();
+                int[] batch = new int[1024];
+                while (!Thread.currentThread().isInterrupted()) {
+                    for (int i = 0; i < batch.length; i++) {
+                        batch[i] = random.nextInt(99_999) + 1;
+                    }
+                    stream.accept(batch);
+                }
+            });
+        }
+
+        for (int s = 0; s < seconds; s++) {
+            Thread.sleep(1000);
+            System.out.printf("%-10s %12s %12s %12s%n", "Window", "Elements", "Max", "Even");
+            System.out.println(stream.getStatus());
+        }
+        executor.shutdownNow();
+    }
+}
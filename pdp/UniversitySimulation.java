@@ -7,12 +7,13 @@
 //Assignment Number: 1
 
 
+import java.lang.invoke.VarHandle;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.locks.*;
 
 
-class Classroom {
+class Classroom implements CampusSnapshot.Source {
     private final String roomId;
     private final int roomCapacity;
     
@@ -38,35 +39,145 @@ class Classroom {
     
     private final Lock roomLock = new ReentrantLock();
 
+    // Trainees parked in enterTrainee, oldest first; guarded by roomLock
+    private static final class Waiter {
+        final Thread thread = Thread.currentThread();
+        volatile boolean granted = false;
+    }
+
+    private final ArrayDeque<Waiter> waitingTrainees = new ArrayDeque<>();
+
+    final RoomMetrics metrics;
+
+    // Seqlock version for StatusReporter, odd while a change is being made
+    private volatile long version = 0;
+
     public Classroom(String id, int capacity) {
         this.roomId = id;
         this.roomCapacity = capacity;
         this.traineeSlots = new Semaphore(capacity, true);
         this.visitorPasses = new Semaphore(5, true);
         this.tutorAccessLock = new Semaphore(1);
+        this.metrics = new RoomMetrics(id, capacity);
     }
 
+    // Never waits, and never takes a slot ahead of a parked trainee
     public boolean attemptTraineeEntry() {
-        roomLock.lock();
         try {
-            if (!lectureOngoing && traineeSlots.tryAcquire()) {
-                currentTrainees++;
+            return admitTrainee(0);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // Parks until a slot is handed over
+    public void enterTrainee() throws InterruptedException {
+        admitTrainee(-1);
+    }
+
+    // Parks for at most the timeout; false if no slot was handed over by then
+    public boolean tryEnterTrainee(long timeout, TimeUnit unit) throws InterruptedException {
+        return admitTrainee(Math.max(0, unit.toNanos(timeout)));
+    }
+
+    // timeoutNanos < 0 waits without a limit
+    private boolean admitTrainee(long timeoutNanos) throws InterruptedException {
+        long waitStart = System.nanoTime();
+        Waiter me;
+        metrics.lock(roomLock);
+        try {
+            if (waitingTrainees.isEmpty() && takeTraineeSlot()) {
+                metrics.admitted(RoomMetrics.STUDENT, System.nanoTime() - waitStart);
                 return true;
             }
-            return false;
+            if (timeoutNanos == 0) {
+                metrics.rejected(RoomMetrics.STUDENT);
+                return false;
+            }
+            me = new Waiter();
+            waitingTrainees.add(me);
         } finally {
             roomLock.unlock();
         }
+
+        long deadline = waitStart + timeoutNanos;
+        while (!me.granted) {
+            if (timeoutNanos < 0) {
+                LockSupport.park(this);
+            } else {
+                LockSupport.parkNanos(this, deadline - System.nanoTime());
+            }
+            boolean interrupted = Thread.interrupted();
+            if (me.granted) {
+                if (interrupted) {
+                    Thread.currentThread().interrupt(); // the slot is ours, keep the interrupt for later
+                }
+                break;
+            }
+            if (interrupted || (timeoutNanos >= 0 && System.nanoTime() - deadline >= 0)) {
+                metrics.lock(roomLock);
+                try {
+                    // A handoff may have happened after the check above
+                    if (!me.granted) {
+                        waitingTrainees.remove(me);
+                        if (interrupted) {
+                            throw new InterruptedException();
+                        }
+                        metrics.rejected(RoomMetrics.STUDENT);
+                        return false;
+                    }
+                } finally {
+                    roomLock.unlock();
+                }
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        metrics.admitted(RoomMetrics.STUDENT, System.nanoTime() - waitStart);
+        return true;
+    }
+
+    // Called with roomLock held
+    private boolean takeTraineeSlot() {
+        if (!lectureOngoing && traineeSlots.tryAcquire()) {
+            beginWrite();
+            currentTrainees++;
+            endWrite();
+            metrics.occupancyChanged(currentTrainees + currentVisitors);
+            return true;
+        }
+        return false;
+    }
+
+    // Called with roomLock held: gives freed slots to parked trainees in arrival order
+    private void handOffTraineeSlots() {
+        while (!waitingTrainees.isEmpty() && takeTraineeSlot()) {
+            Waiter next = waitingTrainees.poll();
+            next.granted = true;
+            LockSupport.unpark(next.thread);
+        }
     }
 
 
     public boolean attemptVisitorEntry() {
-        roomLock.lock();
+        return attemptVisitorEntry(System.nanoTime());
+    }
+
+    // waitStart is when the visitor started trying, so the retries count as waiting
+    public boolean attemptVisitorEntry(long waitStart) {
+        metrics.lock(roomLock);
         try {
             if (!lectureOngoing && visitorPasses.tryAcquire()) {
+                beginWrite();
                 currentVisitors++;
+                endWrite();
+                metrics.occupancyChanged(currentTrainees + currentVisitors);
+                metrics.admitted(RoomMetrics.VISITOR, System.nanoTime() - waitStart);
                 return true;
             }
+            metrics.rejected(RoomMetrics.VISITOR);
             return false;
         } finally {
             roomLock.unlock();
@@ -74,19 +185,26 @@ class Classroom {
     }
 
     public void traineeExit() {
-        roomLock.lock();
+        metrics.lock(roomLock);
         try {
+            beginWrite();
             currentTrainees--;
+            endWrite();
+            metrics.occupancyChanged(currentTrainees + currentVisitors);
             traineeSlots.release();
+            handOffTraineeSlots();
         } finally {
             roomLock.unlock();
         }
     }
 
     public void visitorExit() {
-        roomLock.lock();
+        metrics.lock(roomLock);
         try {
+            beginWrite();
             currentVisitors--;
+            endWrite();
+            metrics.occupancyChanged(currentTrainees + currentVisitors);
             visitorPasses.release();
         } finally {
             roomLock.unlock();
@@ -94,13 +212,18 @@ class Classroom {
     }
 
     public boolean grantTutorAccess(String tutorName) {
-        roomLock.lock();
+        long waitStart = System.nanoTime();
+        metrics.lock(roomLock);
         try {
             if (tutorAccessLock.tryAcquire()) {
+                beginWrite();
                 lectureOngoing = true;
                 activeTutor = tutorName;
+                endWrite();
+                metrics.admitted(RoomMetrics.LECTURER, System.nanoTime() - waitStart);
                 return true;
             }
+            metrics.rejected(RoomMetrics.LECTURER);
             return false;
         } finally {
             roomLock.unlock();
@@ -108,17 +231,43 @@ class Classroom {
     }
 
     public void tutorDeparture() {
-        roomLock.lock();
+        metrics.lock(roomLock);
         try {
+            beginWrite();
             lectureOngoing = false;
             activeTutor = "None";
+            endWrite();
             tutorAccessLock.release();
+            handOffTraineeSlots(); // the lecture held back everyone that is queued
         } finally {
             roomLock.unlock();
         }
     }
 
 
+    // Called with roomLock held
+    private void beginWrite() {
+        version++;
+        VarHandle.storeStoreFence();
+    }
+
+    private void endWrite() {
+        version++;
+    }
+
+    @Override
+    public long version() {
+        return version;
+    }
+
+    @Override
+    public void copyTo(CampusSnapshot.RoomState into) {
+        into.name = roomId;
+        into.lecturer = activeTutor;
+        into.inSession = lectureOngoing;
+        into.students = currentTrainees;
+        into.visitors = currentVisitors;
+    }
 
     public String getRoomId() {
         return roomId;
@@ -146,7 +295,7 @@ class Classroom {
 }
 
 
-class Trainee extends Thread {
+class Trainee implements Runnable {
     private final Classroom trainingArea;
 
     public Trainee(Classroom area) {
@@ -156,23 +305,27 @@ class Trainee extends Thread {
     @Override
     public void run() {
         while (!Thread.currentThread().isInterrupted()) {
-            if (trainingArea.attemptTraineeEntry()) {
+            try {
+                // Parks while the room is full or in a lecture, instead of retrying
+                trainingArea.enterTrainee();
                 try {
                     Thread.sleep(ThreadLocalRandom.current().nextInt(1000, 4000));
                     
-                    // If there's no lecture, exit after studying
-                    if (!trainingArea.isLectureOngoing()) {
-                        trainingArea.traineeExit();
+                    // If there's no lecture, exit after studying; otherwise stay for the lecture
+                    while (trainingArea.isLectureOngoing()) {
+                        Thread.sleep(ThreadLocalRandom.current().nextInt(1000, 4000));
                     }
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
+                } finally {
+                    trainingArea.traineeExit();
                 }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
         }
     }
 }
 
-class Visitor extends Thread {
+class Visitor implements Runnable {
     private final Classroom visitingSpace;
 
     public Visitor(Classroom space) {
@@ -181,12 +334,14 @@ class Visitor extends Thread {
 
     @Override
     public void run() {
+        long waitStart = System.nanoTime();
         while (!Thread.currentThread().isInterrupted()) {
-            if (visitingSpace.attemptVisitorEntry()) {
+            if (visitingSpace.attemptVisitorEntry(waitStart)) {
                 try {
                     int stayTime = ThreadLocalRandom.current().nextInt(500, 2500);
                     Thread.sleep(stayTime);
                     visitingSpace.visitorExit();
+                    waitStart = System.nanoTime();
                 } catch (InterruptedException e) {
                     Thread.currentThread().interrupt();
                     break;
@@ -205,7 +360,7 @@ class Visitor extends Thread {
 }
 
 
-class Tutor extends Thread {
+class Tutor implements Runnable {
     private final Classroom lectureArea;
     private final String tutorId;
 
@@ -250,16 +405,17 @@ class StatusReporter extends Thread {
                 "ClassRoom", "Lecturer", "InSession", "Students", "Visitors");
             System.out.println("=".repeat(80));
 
-            synchronized (trackedRooms) {
-                for (Classroom room : trackedRooms) {
-                    System.out.printf("%-12s %-12s %-12s %-12d %-12d%n",
-                        room.getRoomId(),
-                        room.getActiveTutor(),
-                        room.isLectureOngoing() ? "True" : "False",
-                        room.getCurrentTrainees(),
-                        room.getCurrentVisitors());
-                }
+            // Consistent rows without locking the rooms
+            CampusSnapshot snapshot = CampusSnapshot.capture(trackedRooms);
+            for (CampusSnapshot.RoomState room : snapshot.rooms) {
+                System.out.printf("%-12s %-12s %-12s %-12d %-12d%n",
+                    room.name,
+                    room.lecturer,
+                    room.inSession ? "True" : "False",
+                    room.students,
+                    room.visitors);
             }
+            System.out.println(snapshot.consistency());
 
             System.out.println("=".repeat(80) + "\n");
 
@@ -275,37 +431,56 @@ class StatusReporter extends Thread {
 
 
 public class UniversitySimulation {
+    // Platform threads by default, virtual threads with --virtual (JDK 21).
+    // Virtual mode relies on every wait blocking: trainees park in enterTrainee and visitors
+    // and tutors sleep between attempts, so no agent spins on a carrier thread.
+    static ThreadFactory agentThreads = Thread::new;
+
+    static void launch(Runnable agent) {
+        agentThreads.newThread(agent).start();
+    }
+
     public static void main(String[] args) {
-        List<Classroom> allRooms = Arrays.asList(
-            new Classroom("W201", 60),
-            new Classroom("W202", 60),
-            new Classroom("W101", 20),
-            new Classroom("JS101", 30)
-            
-        );
-
-        List<String> facultyMembers = Arrays.asList(
-            "Osama", "Barry", "Faheem", "Alex", "Aqeel", "Waseem"
-        );
+        if (Arrays.asList(args).contains("--virtual")) {
+            agentThreads = VirtualThreads.factory("agent-");
+        }
+
+        // Rooms and tutors from -Dclassroom.scenario=<file>, or the default campus
+        CampusScenario scenario = CampusScenario.fromSystemProperties();
+        CampusRegistry<Classroom> campus = scenario.buildCampus(Classroom::new);
+        List<Classroom> allRooms = new ArrayList<>(campus.size());
+        for (int id = 0; id < campus.size(); id++) {
+            allRooms.add(campus.get(id));
+        }
+
+        List<String> facultyMembers = Arrays.asList(scenario.lecturers);
 
     
         for (Classroom room : allRooms) {
             int traineesToSpawn = room.getRoomCapacity() / 3;
             for (int i = 0; i < traineesToSpawn; i++) {
-                new Trainee(room).start();
+                launch(new Trainee(room));
             }
             for (int i = 0; i < 3; i++) {
-                new Visitor(room).start();
+                launch(new Visitor(room));
             }
         }
 
         
         for (int i = 0; i < facultyMembers.size(); i++) {
-            new Tutor(
+            launch(new Tutor(
                 allRooms.get(i % allRooms.size()),
                 facultyMembers.get(i)
-            ).start();
+            ));
         }
+        // Wait-time, rejection and contention metrics, over JMX and optionally -Dclassroom.metrics.file
+        List<RoomMetrics> metrics = new ArrayList<>(allRooms.size());
+        for (Classroom room : allRooms) {
+            metrics.add(room.metrics);
+        }
+        RoomMetrics.register("UniversitySimulation", metrics);
+        RoomMetrics.startDump(metrics);
+
     new StatusReporter(allRooms).start();
     }
 }
\ No newline at end of file
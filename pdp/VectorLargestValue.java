@@ -0,0 +1,90 @@
+package Pdp2;
+import java.util.concurrent.*;
+import java.util.*;
+import jdk.incubator.vector.*;
+
+// Needs the incubator module: javac/java --add-modules jdk.incubator.vector
+public class VectorLargestValue {
+
+    static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    // Same result as ArrayProcessor, but compares a whole vector of lanes per step
+    static class VectorProcessor implements Callable<int[]> {
+
+        private final int start, end;
+        private final int[] array;
+
+        public VectorProcessor(int[] array, int start, int end) {
+            this.array = array;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int[] call() {
+            IntVector maxVector = IntVector.broadcast(SPECIES, Integer.MIN_VALUE);
+            int evenCount = 0;
+
+            int i = start;
+            int upperBound = start + SPECIES.loopBound(end - start);
+            for (; i < upperBound; i += SPECIES.length()) {
+                IntVector v = IntVector.fromArray(SPECIES, array, i);
+                maxVector = maxVector.max(v);
+                evenCount += v.and(1).compare(VectorOperators.EQ, 0).trueCount();
+            }
+            int max = maxVector.reduceLanes(VectorOperators.MAX);
+
+            // Scalar tail for the elements that do not fill a vector
+            for (; i < end; i++) {
+                if (array[i] > max) {
+                    max = array[i];
+                }
+                if (array[i] % 2 == 0) {
+                    evenCount++;
+                }
+            }
+            return new int[]{max, evenCount};
+        }
+    }
+
+    // args: [scalar|vector] [size]
+    public static void main(String[] args) {
+        String kernel = args.length > 0 ? args[0] : "vector";
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : 10_000_000;
+        int[] array = new Random().ints(size, 1, 100_000).toArray();
+
+        int numThreads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+
+        LargestValue.Kernel chunkKernel;
+        switch (kernel) {
+            case "scalar":
+                chunkKernel = LargestValue.ArrayProcessor::new;
+                break;
+            case "vector":
+                chunkKernel = VectorProcessor::new;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown kernel: " + kernel + " (expected scalar or vector)");
+        }
+
+        // Warm-up passes so the timed run measures compiled code
+        for (int i = 0; i < 10; i++) {
+            LargestValue.reduce(executor, array, numThreads, chunkKernel);
+        }
+
+        long startTime = System.nanoTime();
+        int[] result = LargestValue.reduce(executor, array, numThreads, chunkKernel);
+        long endTime = System.nanoTime();
+
+        executor.shutdown();
+
+        double durationSecs = (endTime - startTime) / 1e9;
+        double gigabytesPerSec = (size * (double) Integer.BYTES) / durationSecs / 1e9;
+
+        System.out.println("Kernel: " + kernel + " (" + SPECIES.length() + " lanes)");
+        System.out.println("Largest Number in the Array: " + result[0]);
+        System.out.println("Total Even Count: " + result[1]);
+        System.out.printf("%.3f millisecs, %.2f GB/s%n", durationSecs * 1000, gigabytesPerSec);
+    }
+}
@@ -0,0 +1,109 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+// Scaling run for the classroom rules on virtual threads.
+// Starts a campus of CollegeClassrooms.Classroom rooms with one virtual thread per
+// agent (students, visitors and lecturers) and reports how many agents are alive and
+// how many admissions go through each second. Classroom blocks only in Semaphore.acquire
+// and Condition.await, which unmount a virtual thread instead of pinning its carrier;
+// run with -Djdk.tracePinnedThreads=full to confirm nothing pins.
+// The run fails with an IllegalStateException unless every agent was alive at the same
+// time, admissions went through in every second, and no sampled room ever held more
+// students or visitors than its places. Needs JDK 21.
+//
+// args: [agents] [rooms] [seconds]
+public class VirtualCampusScaling {
+
+    public static void main(String[] args) throws InterruptedException {
+        int agents = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int roomCount = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        CollegeClassrooms.Classroom[] rooms = new CollegeClassrooms.Classroom[roomCount];
+        for (int i = 0; i < roomCount; i++) {
+            rooms[i] = new CollegeClassrooms.Classroom("R" + i, 60);
+        }
+
+        AtomicInteger alive = new AtomicInteger();
+        LongAdder admissions = new LongAdder();
+        CountDownLatch stop = new CountDownLatch(1);
+
+        long startTime = System.nanoTime();
+        ExecutorService executor = VirtualThreads.perTaskExecutor();
+        for (int i = 0; i < agents; i++) {
+            CollegeClassrooms.Classroom room = rooms[i % roomCount];
+            int role = i % 20; // 1 lecturer and 3 visitors for every 16 students
+            int lecturerId = i;
+            String lecturerName = "L" + i;
+            executor.execute(() -> {
+                alive.incrementAndGet();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    while (stop.getCount() > 0) {
+                        if (role == 0) {
+                            room.enterLecturer(lecturerId, lecturerName);
+                            room.startLecture();
+                            Thread.sleep(random.nextInt(200, 500));
+                            room.leaveLecturer();
+                        } else if (role < 4) {
+                            room.enterVisitor();
+                            Thread.sleep(random.nextInt(100, 300));
+                            room.leaveVisitor();
+                        } else {
+                            room.enterStudent();
+                            Thread.sleep(random.nextInt(300, 800));
+                            room.leaveStudent();
+                        }
+                        admissions.increment();
+                        Thread.sleep(random.nextInt(100, 500));
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    alive.decrementAndGet();
+                }
+            });
+        }
+        long startedMillis = (System.nanoTime() - startTime) / 1_000_000;
+        System.out.println("Started " + agents + " agents in " + roomCount + " rooms in " + startedMillis + " millisecs");
+
+        Runtime runtime = Runtime.getRuntime();
+        long lastAdmissions = 0;
+        int peakAlive = 0;
+        List<String> failures = new ArrayList<>();
+        CampusSnapshot.RoomState state = new CampusSnapshot.RoomState();
+        for (int s = 1; s <= seconds; s++) {
+            Thread.sleep(1000);
+            long total = admissions.sum();
+            int aliveNow = alive.get();
+            peakAlive = Math.max(peakAlive, aliveNow);
+            System.out.printf("%3ds  alive %,10d  admissions/sec %,10d  heap %,6d MB%n",
+                s, aliveNow, total - lastAdmissions,
+                (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024));
+            if (total == lastAdmissions) {
+                failures.add("no admissions in second " + s);
+            }
+            lastAdmissions = total;
+            for (CollegeClassrooms.Classroom room : rooms) {
+                CampusSnapshot.read(room, state);
+                if (state.students > room.capacity - room.visitorPlaces || state.visitors > room.visitorPlaces) {
+                    failures.add(room.name + " over its places: " + state.students + " students, "
+                        + state.visitors + " visitors");
+                }
+            }
+        }
+
+        stop.countDown();
+        executor.shutdownNow();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        System.out.println("Total admissions: " + admissions.sum() + ", peak alive agents: " + peakAlive);
+        if (peakAlive < agents) {
+            failures.add("only " + peakAlive + " of " + agents + " agents were alive at once");
+        }
+        if (!failures.isEmpty()) {
+            throw new IllegalStateException("Scaling run failed: " + failures.subList(0, Math.min(5, failures.size())));
+        }
+        System.out.println("All " + agents + " agents ran concurrently");
+    }
+}
@@ -0,0 +1,35 @@
+import java.lang.reflect.*;
+import java.util.concurrent.*;
+
+// Virtual threads for the --virtual mode of the simulations.
+// The simulations build on JDK 17 and use plain platform threads by default; virtual
+// threads are JDK 21 API, so they are looked up reflectively and only when --virtual is
+// given. On an older JDK asking for them fails with a message instead of a link error.
+public class VirtualThreads {
+
+    // Names the threads prefix0, prefix1, ...
+    static ThreadFactory factory(String prefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw unsupported(e);
+        }
+    }
+
+    // One new virtual thread per task
+    static ExecutorService perTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw unsupported(e);
+        }
+    }
+
+    private static UnsupportedOperationException unsupported(ReflectiveOperationException e) {
+        return new UnsupportedOperationException("Virtual threads need JDK 21 or later, running on "
+            + System.getProperty("java.version"), e);
+    }
+}